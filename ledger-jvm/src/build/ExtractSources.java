@@ -0,0 +1,57 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copies the named classes out of payment_app.java, where every class sits
+ * under a "// Name.java" line, into one source file each so Maven can
+ * compile the Android-free part of the app on a plain JVM. Run with the
+ * java source launcher: ExtractSources.java <dump> <output dir> <class>...
+ */
+public class ExtractSources {
+    private static final Pattern SECTION = Pattern.compile("(?m)^// (\\w+)\\.java\\n");
+    private static final Pattern PACKAGE = Pattern.compile("(?m)^package ([\\w.]+);");
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: ExtractSources <dump> <output dir> <class>...");
+        }
+        String dump = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        Path outputDir = Paths.get(args[1]);
+        Set<String> wanted = new HashSet<>(Arrays.asList(args).subList(2, args.length));
+        
+        Matcher section = SECTION.matcher(dump);
+        boolean found = section.find();
+        while (found) {
+            String name = section.group(1);
+            int start = section.end();
+            found = section.find();
+            if (!wanted.remove(name)) {
+                continue;
+            }
+            String source = dump.substring(start, found ? section.start() : dump.length());
+            Matcher pkg = PACKAGE.matcher(source);
+            if (!pkg.find()) {
+                throw new IllegalStateException(name + " has no package declaration");
+            }
+            Path dir = outputDir.resolve(pkg.group(1).replace('.', '/'));
+            Files.createDirectories(dir);
+            Path file = dir.resolve(name + ".java");
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            // Leave unchanged files alone so incremental builds stay incremental
+            if (!Files.exists(file) || !Arrays.equals(Files.readAllBytes(file), bytes)) {
+                Files.write(file, bytes);
+            }
+        }
+        if (!wanted.isEmpty()) {
+            throw new IllegalStateException("Not found in " + args[0] + ": " + wanted);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package android.database;
+
+/**
+ * The part of Android's Cursor that CustomerRowMapper and
+ * TransactionRowMapper use, so the mappers compile and can be measured on a
+ * plain JVM. Nothing else in the app is built against it.
+ */
+public interface Cursor {
+    int getColumnIndex(String columnName);
+    
+    int getColumnIndexOrThrow(String columnName) throws IllegalArgumentException;
+    
+    int getInt(int columnIndex);
+    
+    double getDouble(int columnIndex);
+    
+    String getString(int columnIndex);
+}
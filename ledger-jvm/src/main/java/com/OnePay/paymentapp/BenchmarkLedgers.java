@@ -0,0 +1,81 @@
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+
+/**
+ * Seeded ledgers for the benchmarks. Each size is generated once with a
+ * fixed seed and history end and cached under {@code target/bench-db} (or
+ * the directory in the {@code bench.dbDir} property), so large sizes only
+ * pay the seeding cost on the first run. Benchmarks that write work on a throwaway copy.
+ */
+final class BenchmarkLedgers {
+    static final long SEED = 42;
+    // 2026-01-01T00:00:00Z, so cached ledgers do not depend on the day they were seeded
+    static final long HISTORY_END_MILLIS = 1767225600000L;
+    
+    private BenchmarkLedgers() {}
+    
+    /** Path of the cached ledger, seeding it first if it does not exist yet. */
+    static synchronized Path cached(int customers, int transactions) {
+        Path dir = Paths.get(System.getProperty("bench.dbDir", "target/bench-db"));
+        Path file = dir.resolve("ledger-" + customers + "-" + transactions + ".db");
+        if (Files.exists(file)) {
+            return file;
+        }
+        try {
+            Files.createDirectories(dir);
+            // Seed under a temporary name, so an interrupted run does not leave a partial ledger behind
+            Path partial = dir.resolve(file.getFileName() + ".partial");
+            deleteDatabase(partial);
+            try (JdbcLedgerStore store = new JdbcLedgerStore("jdbc:sqlite:" + partial)) {
+                store.seed(new LedgerSeeder(SEED, customers, transactions, HISTORY_END_MILLIS));
+                store.getConnection().createStatement().execute("PRAGMA wal_checkpoint(TRUNCATE)");
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+            deleteDatabase(partial);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed " + file, e);
+        }
+    }
+    
+    /** A private copy of the cached ledger; remove it with {@link #deleteDatabase}. */
+    static Path workingCopy(int customers, int transactions) {
+        Path source = cached(customers, transactions);
+        try {
+            Path copy = Files.createTempFile(source.getParent(), "work-", ".db");
+            Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    static JdbcLedgerStore open(Path file) {
+        try {
+            return new JdbcLedgerStore("jdbc:sqlite:" + file);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not open " + file, e);
+        }
+    }
+    
+    /** Mobile of the seeded customer at {@code index}, counting from 0. */
+    static String mobile(int index) {
+        return LedgerSeeder.mobile(index);
+    }
+    
+    /** Deletes a database file together with its WAL and shared-memory files. */
+    static void deleteDatabase(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Paths.get(file + "-wal"));
+        Files.deleteIfExists(Paths.get(file + "-shm"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for one payroll-style payout batch, a single funding account paying
+ * {@code batch} random customers one cent each. Each iteration uses a fresh
+ * funding account, so every batch is fully funded; divide the batch size by
+ * the score for transfers per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkTransferBenchmark {
+    private static final int CUSTOMERS = 100_000;
+    
+    @Param({"10000", "100000"})
+    public int batch;
+    
+    private Path file;
+    private JdbcLedgerStore store;
+    private int nextSource;
+    private List<TransferRequest> requests;
+    
+    @Setup(Level.Trial)
+    public void open() {
+        file = BenchmarkLedgers.workingCopy(CUSTOMERS, CUSTOMERS);
+        store = BenchmarkLedgers.open(file);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws SQLException, IOException {
+        store.close();
+        BenchmarkLedgers.deleteDatabase(file);
+    }
+    
+    @Setup(Level.Iteration)
+    public void prepareBatch() {
+        // Seeded balances start at 1,000, enough for 100,000 cents
+        String source = BenchmarkLedgers.mobile(nextSource++);
+        Random random = new Random(nextSource);
+        requests = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            requests.add(new TransferRequest(source, BenchmarkLedgers.mobile(random.nextInt(CUSTOMERS)), 0.01));
+        }
+    }
+    
+    @Benchmark
+    public long[] bulkTransfer() {
+        return store.bulkTransfer(requests);
+    }
+}
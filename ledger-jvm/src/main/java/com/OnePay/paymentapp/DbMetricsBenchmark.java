@@ -0,0 +1,97 @@
+package com.OnePay.paymentapp;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What instrumenting a query costs with metrics off and on: the bare
+ * timer and counter calls, and a customer lookup timed the way
+ * DatabaseHelper times it, next to the same lookup without a timer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DbMetricsBenchmark {
+    private static final DbMetrics.Timer TIMER = DbMetrics.timer("benchmark.lookup");
+    private static final DbMetrics.Counter COUNTER = DbMetrics.counter("benchmark.rows");
+    private static final String SQL = "SELECT * FROM customers WHERE mobile = ?";
+    
+    @Param({"false", "true"})
+    public boolean enabled;
+    
+    @Param({"10000"})
+    public int customers;
+    
+    private JdbcLedgerStore store;
+    
+    @Setup(Level.Trial)
+    public void open() {
+        // Read only, so the shared cached ledger is safe to use directly
+        store = BenchmarkLedgers.open(BenchmarkLedgers.cached(customers, customers));
+        DbMetrics.reset();
+        DbMetrics.setEnabled(enabled);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        DbMetrics.setEnabled(false);
+        store.close();
+    }
+    
+    private String randomMobile() {
+        return BenchmarkLedgers.mobile(ThreadLocalRandom.current().nextInt(customers));
+    }
+    
+    @Benchmark
+    public long timer() {
+        long started = TIMER.start();
+        TIMER.stop(started, 1, SQL, "[TEXT(10)]");
+        return started;
+    }
+    
+    @Benchmark
+    public void counter() {
+        COUNTER.increment();
+    }
+    
+    /** Four threads on one timer, to show whether the atomics contend. */
+    @Benchmark
+    @Threads(4)
+    public long timerContended() {
+        long started = TIMER.start();
+        TIMER.stop(started, 1, SQL, "[TEXT(10)]");
+        return started;
+    }
+    
+    @Benchmark
+    public Customer lookup() {
+        return store.getCustomerByMobile(randomMobile());
+    }
+    
+    @Benchmark
+    public Customer timedLookup() {
+        String mobile = randomMobile();
+        long started = TIMER.start();
+        Customer customer = store.getCustomerByMobile(mobile);
+        TIMER.stop(started, customer != null ? 1 : 0, SQL, new Object[]{mobile});
+        return customer;
+    }
+}
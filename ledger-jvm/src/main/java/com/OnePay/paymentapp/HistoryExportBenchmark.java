@@ -0,0 +1,117 @@
+package com.OnePay.paymentapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full statement export for the busiest account of the million-transfer
+ * ledger, as CSV and JSON Lines, plain and gzipped. The rows counter gives
+ * rows per second. After each iteration the peak used heap since the
+ * previous one is printed, summed over the heap pools; add {@code -prof gc}
+ * for the bytes allocated per export. The first run seeds the ledger, which
+ * takes a few minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HistoryExportBenchmark {
+    private static final int CUSTOMERS = 100_000;
+    private static final int TRANSACTIONS = 1_000_000;
+    
+    @Param({"CSV", "JSON_LINES"})
+    public HistoryExporter.Format format;
+    
+    @Param({"false", "true"})
+    public boolean gzip;
+    
+    private JdbcLedgerStore store;
+    private String mobile;
+    private Path dir;
+    private File target;
+    private long peakHeapBytes;
+    
+    /** Rows exported, reported by JMH as rows per second. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+        
+        @Setup(Level.Iteration)
+        public void clear() {
+            rows = 0;
+        }
+    }
+    
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        // Read only, so the shared cached ledger is safe to use directly
+        store = BenchmarkLedgers.open(BenchmarkLedgers.cached(CUSTOMERS, TRANSACTIONS));
+        // Seeded payees are skewed towards the lowest indices
+        mobile = BenchmarkLedgers.mobile(0);
+        dir = Files.createTempDirectory("history-export");
+        target = dir.resolve(gzip ? "statement.gz" : "statement").toFile();
+    }
+    
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+    
+    @TearDown(Level.Iteration)
+    public void samplePeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapBytes = Math.max(peakHeapBytes, peak);
+        System.out.printf("%npeak heap %.1f MB%n", peak / (1024.0 * 1024.0));
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws IOException, SQLException {
+        System.out.printf("%n%s, gzip %b: peak heap over the trial %.1f MB%n", format, gzip,
+                peakHeapBytes / (1024.0 * 1024.0));
+        store.close();
+        Files.deleteIfExists(target.toPath());
+        Files.deleteIfExists(dir);
+    }
+    
+    @Benchmark
+    public long export(Rows counter) throws IOException {
+        try (HistoryExporter exporter = new HistoryExporter(target, format, gzip, mobile)) {
+            long rows = store.exportTransactionHistory(mobile, null, null, exporter);
+            counter.rows += rows;
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.OnePay.paymentapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-message cost of picking the assistant's reply as the number of
+ * intents grows: the intent engine against a lower-case-and-contains loop
+ * over the same phrases, which at six intents is the if/else chain
+ * ChatbotActivity used before. Past six, synthetic intents with made-up
+ * words are added and the six real topics are spread evenly among them,
+ * so the loop reaches a real topic after a share of the synthetic ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntentEngineBenchmark {
+    private static final String[] MESSAGES = {
+            "hi",
+            "How do I send money to my brother?",
+            "what's my account balance",
+            "Can you show my transaction history for last month please",
+            "I want to receive money from a friend, what are my details?",
+            "scan a QR code",
+            "The app crashed yesterday when I opened it and I am not sure what to do now, any ideas?",
+            "thanks"
+    };
+    // The old chain's topics and phrases, in its order
+    private static final String[][] TOPICS = {
+            {"send_money", "send money", "transfer", "send", "pay someone"},
+            {"receive_money", "receive money", "receive", "get paid", "my details"},
+            {"qr_payment", "qr", "scan", "code"},
+            {"transaction_history", "transaction history", "history", "transactions", "statement"},
+            {"account_balance", "account balance", "balance", "how much money"},
+            {"greeting", "hello", "hi", "help"}
+    };
+    private static final int SYNTHETIC_PHRASES = 4;
+    
+    @Param({"6", "100", "500"})
+    public int intents;
+    
+    private IntentEngine engine;
+    private String[] intentIds;
+    private String[][] intentPhrases;
+    private int next;
+    
+    @Setup
+    public void build() {
+        List<String[]> table = new ArrayList<>();
+        Random random = new Random(intents);
+        int topic = 0;
+        for (int i = 0; i < intents; i++) {
+            // Topic t sits in the middle of the t-th sixth of the list
+            if (topic < TOPICS.length && i == (2 * topic + 1) * intents / (2 * TOPICS.length)) {
+                table.add(TOPICS[topic++]);
+                continue;
+            }
+            String[] row = new String[1 + SYNTHETIC_PHRASES];
+            row[0] = "synthetic_" + (i - topic);
+            for (int p = 1; p < row.length; p++) {
+                row[p] = p % 2 == 0 ? word(random) + " " + word(random) : word(random);
+            }
+            table.add(row);
+        }
+        
+        IntentEngine.Builder builder = new IntentEngine.Builder();
+        intentIds = new String[table.size()];
+        intentPhrases = new String[table.size()][];
+        for (int i = 0; i < table.size(); i++) {
+            String[] row = table.get(i);
+            intentIds[i] = row[0];
+            intentPhrases[i] = new String[row.length - 1];
+            builder.intent(row[0], row[0]);
+            for (int p = 1; p < row.length; p++) {
+                intentPhrases[i][p - 1] = row[p];
+                // Earlier phrases are the more specific ones, as in ChatbotIntents
+                builder.phrase(row[p], row.length - p);
+            }
+        }
+        engine = builder.build();
+    }
+    
+    /** Four to eight lower-case letters, so the automaton shares its alphabet with the messages. */
+    private static String word(Random random) {
+        char[] letters = new char[4 + random.nextInt(5)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+    
+    @Benchmark
+    public String intentEngine() {
+        IntentEngine.Match match = engine.match(MESSAGES[next++ & 7]);
+        return match != null ? match.getIntentId() : null;
+    }
+    
+    @Benchmark
+    public String containsLoop() {
+        String lowerMessage = MESSAGES[next++ & 7].toLowerCase(Locale.ROOT);
+        for (int i = 0; i < intentIds.length; i++) {
+            for (String phrase : intentPhrases[i]) {
+                if (lowerMessage.contains(phrase)) {
+                    return intentIds[i];
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The three hot paths of the data layer at 10^3 to 10^7 customers, with as
+ * many seeded transactions as customers. Customers are picked uniformly, so
+ * history sizes follow the seeder's skew. The first run at each size seeds
+ * and caches its ledger, which takes minutes at 10^7.
+ *
+ * java -jar target/benchmarks.jar LedgerStoreBenchmark -p rows=1000,100000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerStoreBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rows;
+    
+    private Path file;
+    private JdbcLedgerStore store;
+    
+    @Setup(Level.Trial)
+    public void open() {
+        // transfer() writes, so every trial starts from a fresh copy of the seeded ledger
+        file = BenchmarkLedgers.workingCopy(rows, rows);
+        store = BenchmarkLedgers.open(file);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws SQLException, IOException {
+        store.close();
+        BenchmarkLedgers.deleteDatabase(file);
+    }
+    
+    private String randomMobile() {
+        return BenchmarkLedgers.mobile(ThreadLocalRandom.current().nextInt(rows));
+    }
+    
+    @Benchmark
+    public Customer getCustomerByMobile() {
+        return store.getCustomerByMobile(randomMobile());
+    }
+    
+    @Benchmark
+    public long transfer() {
+        String from = randomMobile();
+        String to = randomMobile();
+        return store.transfer(from, to, 1.00);
+    }
+    
+    @Benchmark
+    public List<Transaction> getTransactionHistory() {
+        return store.getTransactionHistory(randomMobile());
+    }
+}
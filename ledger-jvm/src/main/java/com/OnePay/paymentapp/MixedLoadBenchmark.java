@@ -0,0 +1,109 @@
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Three threads paging through transaction history while a fourth makes
+ * transfers, the mix of the history screen open during a payment. In
+ * "sharedConnection" everyone goes through one store, so readers queue
+ * behind the writer's commits, as with one SQLiteOpenHelper connection.
+ * In "connectionPerThread" each thread has its own connection to the WAL
+ * database, so readers keep reading while the writer commits, which is
+ * what the pooled DatabaseHelper gives the app.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedLoadBenchmark {
+    private static final int PAGE_SIZE = 30;
+    
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        @Param({"100000"})
+        public int customers;
+        
+        Path file;
+        JdbcLedgerStore shared;
+        
+        @Setup(Level.Trial)
+        public void open() {
+            file = BenchmarkLedgers.workingCopy(customers, customers);
+            shared = BenchmarkLedgers.open(file);
+        }
+        
+        @TearDown(Level.Trial)
+        public void close() throws SQLException, IOException {
+            shared.close();
+            BenchmarkLedgers.deleteDatabase(file);
+        }
+        
+        String randomMobile() {
+            return BenchmarkLedgers.mobile(ThreadLocalRandom.current().nextInt(customers));
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class OwnConnection {
+        JdbcLedgerStore store;
+        
+        @Setup(Level.Trial)
+        public void open(Ledger ledger) {
+            store = BenchmarkLedgers.open(ledger.file);
+        }
+        
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            store.close();
+        }
+    }
+    
+    @Benchmark
+    @Group("sharedConnection")
+    @GroupThreads(3)
+    public List<Transaction> sharedRead(Ledger ledger) {
+        return ledger.shared.getTransactionHistoryPage(ledger.randomMobile(), null, PAGE_SIZE);
+    }
+    
+    @Benchmark
+    @Group("sharedConnection")
+    @GroupThreads(1)
+    public long sharedTransfer(Ledger ledger) {
+        return ledger.shared.transfer(ledger.randomMobile(), ledger.randomMobile(), 1.00);
+    }
+    
+    @Benchmark
+    @Group("connectionPerThread")
+    @GroupThreads(3)
+    public List<Transaction> ownRead(Ledger ledger, OwnConnection connection) {
+        return connection.store.getTransactionHistoryPage(ledger.randomMobile(), null, PAGE_SIZE);
+    }
+    
+    @Benchmark
+    @Group("connectionPerThread")
+    @GroupThreads(1)
+    public long ownTransfer(Ledger ledger, OwnConnection connection) {
+        return connection.store.transfer(ledger.randomMobile(), ledger.randomMobile(), 1.00);
+    }
+}
@@ -0,0 +1,65 @@
+package com.OnePay.paymentapp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoded camera frames per second at common preview sizes, through the
+ * same rotation, crop and reader ScanToPayActivity's scanner uses, for a
+ * frame holding a payment code and for an empty one, which is what most
+ * preview frames look like while the user is still aiming. Rotation 90 is
+ * a phone held upright with the usual sensor orientation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QrDecodeBenchmark {
+    private static final String PAYLOAD = "1234567890ACC12345678901234567890";
+    
+    @Param({"640x480", "1280x720"})
+    public String frameSize;
+    
+    @Param({"0", "90"})
+    public int rotation;
+    
+    private final ScannerDecoder decoder = new ScannerDecoder();
+    private int width;
+    private int height;
+    private byte[] codeFrame;
+    private byte[] emptyFrame;
+    
+    @Setup
+    public void render() {
+        String[] size = frameSize.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        codeFrame = QrFrames.cameraFrame(PAYLOAD, width, height, height / 2);
+        emptyFrame = QrFrames.cameraFrame(null, width, height, 0);
+        if (decoder.decodeFrame(codeFrame, width, height, rotation) == null) {
+            throw new IllegalStateException("Fixture frame does not decode");
+        }
+    }
+    
+    @Benchmark
+    public QrPayload frameWithCode() {
+        return decoder.decodeFrame(codeFrame, width, height, rotation);
+    }
+    
+    @Benchmark
+    public QrPayload emptyFrame() {
+        return decoder.decodeFrame(emptyFrame, width, height, rotation);
+    }
+}
@@ -0,0 +1,50 @@
+package com.OnePay.paymentapp;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Camera frame fixtures for the QR decoder, rendered with ZXing's writer
+ * instead of stored as files: grey frames (the Y plane only) with the code
+ * placed off-centre on a noisy background.
+ */
+final class QrFrames {
+    private QrFrames() {}
+    
+    private static BitMatrix encode(String text, int size) {
+        try {
+            return new QRCodeWriter().encode(text, BarcodeFormat.QR_CODE, size, size,
+                    Collections.singletonMap(EncodeHintType.MARGIN, 2));
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Cannot encode " + text, e);
+        }
+    }
+    
+    /**
+     * A {@code width} by {@code height} luminance plane with mild noise and,
+     * unless {@code text} is null, the code drawn {@code codeSize} pixels wide.
+     */
+    static byte[] cameraFrame(String text, int width, int height, int codeSize) {
+        Random random = new Random(width * 31L + height);
+        byte[] plane = new byte[width * height];
+        for (int i = 0; i < plane.length; i++) {
+            plane[i] = (byte) (150 + random.nextInt(40));
+        }
+        if (text != null) {
+            BitMatrix matrix = encode(text, codeSize);
+            int left = width / 3;
+            int top = (height - codeSize) / 2;
+            for (int y = 0; y < codeSize; y++) {
+                for (int x = 0; x < codeSize; x++) {
+                    plane[(top + y) * width + left + x] = (byte) (matrix.get(x, y) ? 30 : 230);
+                }
+            }
+        }
+        return plane;
+    }
+}
@@ -0,0 +1,74 @@
+package com.OnePay.paymentapp;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * As-you-type suggestion latency over synthetic customers, cycling through
+ * mobile, email ID and name prefixes of different selectivity. Setup prints
+ * the build time, the index's own memory estimate and the heap it actually
+ * retains, so size regressions show up next to the latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RecipientIndexBenchmark {
+    private static final String[] FIRST_NAMES = {"Aarav", "Priya", "Rahul", "Sneha", "Vikram", "Ananya", "Rohan",
+            "Kavya"};
+    private static final String[] LAST_NAMES = {"Sharma", "Patel", "Iyer", "Reddy", "Gupta", "Singh", "Nair", "Das"};
+    private static final String[] PREFIXES = {"90000", "9000123", "sharma", "priya", "priya patel", "aa", "zz",
+            "12345"};
+    private static final int LIMIT = 10;
+    
+    @Param({"100000", "1000000"})
+    public int customers;
+    
+    private RecipientIndex index;
+    private int next;
+    
+    @Setup
+    public void build() throws InterruptedException {
+        long heapBefore = usedHeap();
+        long started = System.nanoTime();
+        index = new RecipientIndex();
+        index.beginBulkLoad();
+        for (int i = 0; i < customers; i++) {
+            String name = FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[(i / 8) % LAST_NAMES.length]
+                    + " " + i;
+            index.add(i + 1, name, String.valueOf(9000000000L + i), CustomerIds.forSequence(i + 1).getEmailId());
+        }
+        index.compact();
+        long buildMillis = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("%nRecipientIndex: %d customers, built in %d ms, estimate %.1f MB, retained heap %.1f MB%n",
+                customers, buildMillis, index.estimateMemoryBytes() / 1e6, (usedHeap() - heapBefore) / 1e6);
+    }
+    
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    @Benchmark
+    public List<Customer> search() {
+        String prefix = PREFIXES[next++ & 7];
+        return index.search(prefix, LIMIT);
+    }
+}
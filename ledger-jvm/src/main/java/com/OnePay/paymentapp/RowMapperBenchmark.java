@@ -0,0 +1,109 @@
+package com.OnePay.paymentapp;
+
+import static com.OnePay.paymentapp.LedgerSchema.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-row cost of turning cursor rows into objects: the old readers'
+ * getColumnIndexOrThrow for every field of every row against the row
+ * mappers, which resolve indices once per cursor. Rows are read from memory,
+ * as from a CursorWindow, so the query itself is not part of the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+    private static final int ROWS = 1000;
+    
+    private WindowCursor customers;
+    private WindowCursor narrowCustomers;
+    private WindowCursor transactions;
+    
+    @Setup
+    public void load() throws SQLException {
+        try (JdbcLedgerStore store = BenchmarkLedgers.open(BenchmarkLedgers.cached(10_000, 10_000))) {
+            customers = WindowCursor.query(store.getConnection(), CUSTOMER_SELECT_SQL + " LIMIT " + ROWS);
+            narrowCustomers = WindowCursor.query(store.getConnection(), "SELECT " + COLUMN_ID + ", " 
+                    + COLUMN_MOBILE + ", " + COLUMN_BALANCE + " FROM " + TABLE_CUSTOMERS + " LIMIT " + ROWS);
+            transactions = WindowCursor.query(store.getConnection(), "SELECT * FROM " + TABLE_TRANSACTIONS 
+                    + " LIMIT " + ROWS);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void customersLookupPerRow(Blackhole blackhole) {
+        for (int i = 0; customers.moveToPosition(i); i++) {
+            Customer customer = new Customer();
+            customer.setId(customers.getInt(customers.getColumnIndexOrThrow(COLUMN_ID)));
+            customer.setName(customers.getString(customers.getColumnIndexOrThrow(COLUMN_NAME)));
+            customer.setMobile(customers.getString(customers.getColumnIndexOrThrow(COLUMN_MOBILE)));
+            customer.setAccountNumber(customers.getString(customers.getColumnIndexOrThrow(COLUMN_ACCOUNT_NUMBER)));
+            customer.setUniqueKey(customers.getString(customers.getColumnIndexOrThrow(COLUMN_UNIQUE_KEY)));
+            customer.setEmailId(customers.getString(customers.getColumnIndexOrThrow(COLUMN_EMAIL_ID)));
+            customer.setBalance(customers.getDouble(customers.getColumnIndexOrThrow(COLUMN_BALANCE)));
+            customer.setUnique10Digit(customers.getString(customers.getColumnIndexOrThrow(COLUMN_UNIQUE_10_DIGIT)));
+            blackhole.consume(customer);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void customersMapper(Blackhole blackhole) {
+        CustomerRowMapper mapper = new CustomerRowMapper(customers);
+        for (int i = 0; customers.moveToPosition(i); i++) {
+            blackhole.consume(mapper.map(customers));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void narrowCustomersMapper(Blackhole blackhole) {
+        CustomerRowMapper mapper = new CustomerRowMapper(narrowCustomers);
+        for (int i = 0; narrowCustomers.moveToPosition(i); i++) {
+            blackhole.consume(mapper.map(narrowCustomers));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void transactionsLookupPerRow(Blackhole blackhole) {
+        for (int i = 0; transactions.moveToPosition(i); i++) {
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId(transactions.getInt(transactions.getColumnIndexOrThrow(COLUMN_TRANS_ID)));
+            transaction.setFromCustomer(transactions.getString(
+                    transactions.getColumnIndexOrThrow(COLUMN_FROM_CUSTOMER)));
+            transaction.setToCustomer(transactions.getString(transactions.getColumnIndexOrThrow(COLUMN_TO_CUSTOMER)));
+            transaction.setAmount(transactions.getDouble(transactions.getColumnIndexOrThrow(COLUMN_AMOUNT)));
+            transaction.setTimestamp(transactions.getString(transactions.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
+            transaction.setStatus(transactions.getString(transactions.getColumnIndexOrThrow(COLUMN_STATUS)));
+            blackhole.consume(transaction);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void transactionsMapper(Blackhole blackhole) {
+        TransactionRowMapper mapper = new TransactionRowMapper(transactions);
+        for (int i = 0; transactions.moveToPosition(i); i++) {
+            blackhole.consume(mapper.map(transactions));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.OnePay.paymentapp;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The work zxing-android-embedded does for each preview frame in
+ * ScanToPayActivity, on a plain JVM: rotate the Y plane when the display
+ * is rotated against the sensor, crop it to the default framing rectangle,
+ * binarize it with HybridBinarizer and run the MultiFormatReader that
+ * DefaultDecoderFactory builds for QR_CODE only. The text then goes
+ * through QrPayload.parse, as in onScanned.
+ */
+final class ScannerDecoder {
+    // CameraPreview's default margin around the framing rectangle
+    private static final double MARGIN_FRACTION = 0.1;
+    
+    private final MultiFormatReader reader = new MultiFormatReader();
+    
+    ScannerDecoder() {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, Collections.singletonList(BarcodeFormat.QR_CODE));
+        reader.setHints(hints);
+    }
+    
+    /**
+     * Decodes the Y plane of a {@code width} by {@code height} frame, turned
+     * clockwise by {@code rotation} degrees (0 or 90) for the display.
+     * @return the payment code, or null if there is none in the frame
+     */
+    QrPayload decodeFrame(byte[] yPlane, int width, int height, int rotation) {
+        byte[] data = yPlane;
+        if (rotation == 90) {
+            data = rotateClockwise(yPlane, width, height);
+            int swap = width;
+            width = height;
+            height = swap;
+        }
+        int margin = (int) Math.min(width * MARGIN_FRACTION, height * MARGIN_FRACTION);
+        int cropWidth = width - 2 * margin;
+        int cropHeight = height - 2 * margin;
+        int top = margin;
+        // A portrait preview gets a square framing rectangle
+        if (cropHeight > cropWidth) {
+            top += (cropHeight - cropWidth) / 2;
+            cropHeight = cropWidth;
+        }
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(data, width, height, margin, top,
+                cropWidth, cropHeight, false);
+        try {
+            Result result = reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+            return QrPayload.parse(result.getText());
+        } catch (ReaderException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+    
+    /** SourceData.rotateCW: a full copy of the Y plane for every frame. */
+    private static byte[] rotateClockwise(byte[] data, int width, int height) {
+        byte[] rotated = new byte[width * height];
+        int i = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = height - 1; y >= 0; y--) {
+                rotated[i++] = data[y * width + x];
+            }
+        }
+        return rotated;
+    }
+}
@@ -0,0 +1,107 @@
+package com.OnePay.paymentapp;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * First page of a history search on a ledger with a million transfers, for
+ * the busiest account and a typical one. Queries cover free text, an amount
+ * range, the last 30 days, all three combined, text that matches nothing,
+ * which has to walk the account's whole history, "customer", which
+ * prefixes every seeded name and so is the worst case for the customer
+ * lookup, and the single letter "c", which is too short to be looked up.
+ * The first run seeds the ledger, which takes a few minutes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionSearchBenchmark {
+    private static final int CUSTOMERS = 100_000;
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final int PAGE = 20;
+    
+    @Param({"text", "amount", "last30Days", "combined", "noMatch", "everyCustomer", "oneLetter"})
+    public String query;
+    
+    @Param({"busy", "typical"})
+    public String account;
+    
+    private JdbcLedgerStore store;
+    private TransactionSearch search;
+    
+    @Setup(Level.Trial)
+    public void open() throws SQLException {
+        // Read only, so the shared cached ledger is safe to use directly
+        store = BenchmarkLedgers.open(BenchmarkLedgers.cached(CUSTOMERS, TRANSACTIONS));
+        // Seeded payees are skewed towards the lowest indices
+        String mobile = BenchmarkLedgers.mobile(account.equals("busy") ? 0 : CUSTOMERS / 2);
+        LocalDate newest = LocalDate.parse(newestTimestamp().substring(0, 10));
+        String from30 = newest.minusDays(30).toString();
+        switch (query) {
+            case "text":
+                search = new TransactionSearch(mobile, "47", null, null, null, null);
+                break;
+            case "amount":
+                search = new TransactionSearch(mobile, null, 100.0, 150.0, null, null);
+                break;
+            case "last30Days":
+                search = new TransactionSearch(mobile, null, null, null, from30, null);
+                break;
+            case "combined":
+                search = new TransactionSearch(mobile, "47", 100.0, 400.0, 
+                        newest.minusDays(90).toString(), null);
+                break;
+            case "noMatch":
+                search = new TransactionSearch(mobile, "zzzz", null, null, null, null);
+                break;
+            case "everyCustomer":
+                search = new TransactionSearch(mobile, "customer", null, null, null, null);
+                break;
+            case "oneLetter":
+                search = new TransactionSearch(mobile, "c", null, null, null, null);
+                break;
+            default:
+                throw new IllegalArgumentException(query);
+        }
+        System.out.printf("%n%s, %s account: %d results on the first page%n", query, account, search().size());
+    }
+    
+    private String newestTimestamp() throws SQLException {
+        try (Statement statement = store.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT MAX(" + LedgerSchema.COLUMN_TIMESTAMP + ") FROM " 
+                     + LedgerSchema.TABLE_TRANSACTIONS)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        store.close();
+    }
+    
+    @Benchmark
+    public List<Transaction> search() {
+        return store.searchTransactionHistory(search, null, PAGE);
+    }
+}
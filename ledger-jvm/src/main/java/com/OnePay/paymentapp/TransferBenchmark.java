@@ -0,0 +1,79 @@
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transfers per second for the old sendMoney() sequence against the single
+ * transaction of {@link LedgerStore#transfer}. Both look the recipient up
+ * first, as the screen does. The old path then writes two absolute balances
+ * and the transaction row, each in its own commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+    @Param({"10000"})
+    public int customers;
+    
+    private Path file;
+    private JdbcLedgerStore store;
+    
+    @Setup(Level.Trial)
+    public void open() {
+        file = BenchmarkLedgers.workingCopy(customers, customers);
+        store = BenchmarkLedgers.open(file);
+    }
+    
+    @TearDown(Level.Trial)
+    public void close() throws SQLException, IOException {
+        store.close();
+        BenchmarkLedgers.deleteDatabase(file);
+    }
+    
+    private String randomMobile() {
+        return BenchmarkLedgers.mobile(ThreadLocalRandom.current().nextInt(customers));
+    }
+    
+    @Benchmark
+    public long threeCommits() {
+        Customer sender = store.getCustomerByMobile(randomMobile());
+        Customer recipient = store.getCustomerByMobile(randomMobile());
+        double amount = 1.00;
+        if (sender.getBalance() < amount || sender.getMobile().equals(recipient.getMobile())) {
+            return -1;
+        }
+        boolean senderUpdated = store.updateBalance(sender.getMobile(), sender.getBalance() - amount);
+        boolean recipientUpdated = store.updateBalance(recipient.getMobile(), recipient.getBalance() + amount);
+        if (senderUpdated && recipientUpdated) {
+            return store.addTransaction(sender.getMobile(), recipient.getMobile(), amount, "SUCCESS");
+        }
+        return -1;
+    }
+    
+    @Benchmark
+    public long oneTransaction() {
+        String sender = randomMobile();
+        Customer recipient = store.getCustomerByMobile(randomMobile());
+        return store.transfer(sender, recipient.getMobile(), 1.00);
+    }
+}
@@ -0,0 +1,95 @@
+package com.OnePay.paymentapp;
+
+import android.database.Cursor;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cursor over rows already copied into memory, the way SQLiteCursor reads
+ * from its CursorWindow. Column lookup is the same case-insensitive linear
+ * scan as AbstractCursor.getColumnIndex, so per-row lookups cost here what
+ * they cost on the device.
+ */
+final class WindowCursor implements Cursor {
+    private final String[] columnNames;
+    private final Object[][] rows;
+    private int position = -1;
+    
+    private WindowCursor(String[] columnNames, Object[][] rows) {
+        this.columnNames = columnNames;
+        this.rows = rows;
+    }
+    
+    static WindowCursor query(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet rs = statement.executeQuery()) {
+            ResultSetMetaData meta = rs.getMetaData();
+            String[] columnNames = new String[meta.getColumnCount()];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = meta.getColumnLabel(i + 1);
+            }
+            List<Object[]> rows = new ArrayList<>();
+            while (rs.next()) {
+                Object[] row = new Object[columnNames.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                rows.add(row);
+            }
+            return new WindowCursor(columnNames, rows.toArray(new Object[0][]));
+        }
+    }
+    
+    int getCount() {
+        return rows.length;
+    }
+    
+    boolean moveToPosition(int position) {
+        this.position = position;
+        return position >= 0 && position < rows.length;
+    }
+    
+    @Override
+    public int getColumnIndex(String columnName) {
+        int dot = columnName.lastIndexOf('.');
+        if (dot >= 0) {
+            columnName = columnName.substring(dot + 1);
+        }
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+    
+    @Override
+    public int getInt(int columnIndex) {
+        return ((Number) rows[position][columnIndex]).intValue();
+    }
+    
+    @Override
+    public double getDouble(int columnIndex) {
+        return ((Number) rows[position][columnIndex]).doubleValue();
+    }
+    
+    @Override
+    public String getString(int columnIndex) {
+        Object value = rows[position][columnIndex];
+        return value == null ? null : value.toString();
+    }
+}
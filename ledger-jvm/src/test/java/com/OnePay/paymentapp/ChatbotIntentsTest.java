@@ -0,0 +1,48 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class ChatbotIntentsTest {
+    private final IntentEngine engine = ChatbotIntents.getEngine();
+    
+    private String intent(String message) {
+        IntentEngine.Match match = engine.match(message);
+        return match != null ? match.getIntentId() : null;
+    }
+    
+    @Test
+    void picksTheTopicWithTheStrongestPhrases() {
+        assertEquals("send_money", intent("How do I send money?"));
+        assertEquals("receive_money", intent("I want to RECEIVE money"));
+        assertEquals("qr_payment", intent("scan a qr code"));
+        assertEquals("transaction_history", intent("show my transaction history"));
+        assertEquals("account_balance", intent("what's my balance"));
+        assertEquals("greeting", intent("hi"));
+        assertEquals("greeting", intent("Hello!"));
+    }
+    
+    @Test
+    void matchesWholeWordsOnly() {
+        // "this" and "which" contain "hi", "transferred" contains "transfer"
+        assertNull(intent("this is which"));
+        assertNull(intent("I transferred it"));
+        assertNull(intent("thanks"));
+        assertEquals("greeting", intent("well, hi there"));
+    }
+    
+    @Test
+    void fillsMonthPlaceholdersOnceTheSummaryHasLoaded() {
+        Customer customer = new Customer();
+        customer.setName("Asha");
+        ActivitySummary month = new ActivitySummary("2026-10", 300, 2, 125.25, 1);
+        String template = "{name} sent ${month_sent} and received ${month_received} in {month_count} transfers";
+        
+        assertEquals("Asha sent $300.00 and received $125.25 in 3 transfers", 
+                IntentEngine.fillTemplate(template, customer, month));
+        assertEquals("Asha sent ${month_sent} and received ${month_received} in {month_count} transfers", 
+                IntentEngine.fillTemplate(template, customer, null));
+    }
+}
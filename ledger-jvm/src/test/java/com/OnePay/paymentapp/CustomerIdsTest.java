@@ -0,0 +1,149 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class CustomerIdsTest {
+    private static final int RANGE = 200_000;
+    private static final String EMAIL_DOMAIN = "@OnePay.com";
+    
+    /** Each field without its fixed prefix or suffix, paired with the alphabet of its check character. */
+    private static final List<Function<CustomerIds, String>> FIELDS = new ArrayList<>();
+    private static final List<String> ALPHABETS = new ArrayList<>();
+    
+    static {
+        FIELDS.add(ids -> ids.getAccountNumber().substring("ACC".length()));
+        ALPHABETS.add(CustomerIds.DIGITS);
+        FIELDS.add(CustomerIds::getUniqueKey);
+        ALPHABETS.add(CustomerIds.KEY_CHARS);
+        FIELDS.add(ids -> ids.getEmailId().substring(0, ids.getEmailId().length() - EMAIL_DOMAIN.length()));
+        ALPHABETS.add(CustomerIds.KEY_CHARS);
+        FIELDS.add(CustomerIds::getUnique10Digit);
+        ALPHABETS.add(CustomerIds.DIGITS);
+    }
+    
+    @Test
+    void neverRepeatsAValueAtEitherEndOfTheSequence() {
+        for (int field = 0; field < FIELDS.size(); field++) {
+            Set<String> seen = new HashSet<>();
+            for (long sequence = 1; sequence <= RANGE; sequence++) {
+                assertTrue(seen.add(FIELDS.get(field).apply(CustomerIds.forSequence(sequence))), "field " + field);
+            }
+            long limit = CustomerIds.SEQUENCE_LIMIT;
+            for (long sequence = limit - RANGE; sequence < limit; sequence++) {
+                assertTrue(seen.add(FIELDS.get(field).apply(CustomerIds.forSequence(sequence))), "field " + field);
+            }
+        }
+    }
+    
+    @Test
+    void rejectsEverySingleCharacterError() {
+        for (long sequence : samples()) {
+            CustomerIds ids = CustomerIds.forSequence(sequence);
+            for (int field = 0; field < FIELDS.size(); field++) {
+                String value = FIELDS.get(field).apply(ids);
+                String alphabet = ALPHABETS.get(field);
+                assertTrue(CustomerIds.hasValidCheck(value, alphabet), value);
+                char[] chars = value.toCharArray();
+                for (int i = 0; i < chars.length; i++) {
+                    char original = chars[i];
+                    for (char typo : alphabet.toCharArray()) {
+                        if (typo != original) {
+                            chars[i] = typo;
+                            assertFalse(CustomerIds.hasValidCheck(new String(chars), alphabet), new String(chars));
+                        }
+                    }
+                    chars[i] = original;
+                }
+            }
+        }
+    }
+    
+    @Test
+    void rejectsNeighbourSwapsOtherThanFirstAndLastCharacter() {
+        for (long sequence : samples()) {
+            CustomerIds ids = CustomerIds.forSequence(sequence);
+            for (int field = 0; field < FIELDS.size(); field++) {
+                String value = FIELDS.get(field).apply(ids);
+                String alphabet = ALPHABETS.get(field);
+                char first = alphabet.charAt(0);
+                char last = alphabet.charAt(alphabet.length() - 1);
+                for (int i = 0; i + 1 < value.length(); i++) {
+                    char a = value.charAt(i);
+                    char b = value.charAt(i + 1);
+                    if (a == b) {
+                        continue;
+                    }
+                    String swapped = value.substring(0, i) + b + a + value.substring(i + 2);
+                    boolean luhnBlindSpot = (a == first && b == last) || (a == last && b == first);
+                    assertEquals(luhnBlindSpot, CustomerIds.hasValidCheck(swapped, alphabet), value + " -> " + swapped);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void lengthsDifferFromLegacyAndSeededIdentifiers() {
+        // Before schema v8: "ACC" and six digits, and random 7-character keys
+        Set<Integer> accountLengths = new HashSet<>();
+        Set<Integer> keyLengths = new HashSet<>();
+        Set<Integer> emailLengths = new HashSet<>();
+        accountLengths.add(9);
+        keyLengths.add(7);
+        emailLengths.add(7 + EMAIL_DOMAIN.length());
+        LedgerSeeder.RowSink lengths = new LedgerSeeder.RowSink() {
+            @Override
+            public boolean isTaken(String identifier) {
+                return false;
+            }
+            
+            @Override
+            public void customer(String name, String mobile, String accountNumber, String uniqueKey,
+                                 String emailId, double balance, String unique10Digit) {
+                accountLengths.add(accountNumber.length());
+                keyLengths.add(uniqueKey.length());
+                emailLengths.add(emailId.length());
+            }
+            
+            @Override
+            public void transaction(String fromMobile, String toMobile, double amount, String timestamp,
+                                    String status) {
+            }
+        };
+        LedgerSeeder seeder = new LedgerSeeder(1, 20, 0, BenchmarkLedgers.HISTORY_END_MILLIS);
+        // Seeded account numbers grow a digit past the millionth customer
+        seeder.generate(0, lengths);
+        seeder.generate(999_990, lengths);
+        seeder.generate(99_999_990, lengths);
+        
+        for (long sequence : samples()) {
+            CustomerIds ids = CustomerIds.forSequence(sequence);
+            assertFalse(accountLengths.contains(ids.getAccountNumber().length()), ids.getAccountNumber());
+            assertFalse(keyLengths.contains(ids.getUniqueKey().length()), ids.getUniqueKey());
+            assertFalse(emailLengths.contains(ids.getEmailId().length()), ids.getEmailId());
+            // Kept at ten digits for QR codes; registration steps over values already taken
+            assertEquals(10, ids.getUnique10Digit().length(), ids.getUnique10Digit());
+        }
+    }
+    
+    /** The ends of the sequence and a spread of values between them. */
+    private static List<Long> samples() {
+        List<Long> samples = new ArrayList<>();
+        samples.add(1L);
+        samples.add(CustomerIds.SEQUENCE_LIMIT - 1);
+        Random random = new Random(25);
+        for (int i = 0; i < 500; i++) {
+            samples.add(1 + (long) (random.nextDouble() * (CustomerIds.SEQUENCE_LIMIT - 1)));
+        }
+        return samples;
+    }
+}
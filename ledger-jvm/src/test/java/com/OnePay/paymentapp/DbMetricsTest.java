@@ -0,0 +1,96 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DbMetricsTest {
+    private static final DbMetrics.Timer TIMER = DbMetrics.timer("test.query");
+    private static final DbMetrics.Counter COUNTER = DbMetrics.counter("test.counter");
+    private static final Object[] ARGS = {"9876543210", 7L};
+    
+    @AfterEach
+    void tearDown() {
+        DbMetrics.setEnabled(false);
+        DbMetrics.setSlowQueryThresholdMillis(50);
+        DbMetrics.reset();
+    }
+    
+    @Test
+    void recordsNothingWhileDisabled() {
+        DbMetrics.setEnabled(false);
+        DbMetrics.setSlowQueryThresholdMillis(0);
+        long started = TIMER.start();
+        TIMER.stop(started, 5, "SELECT 1", new Object[]{"secret"});
+        COUNTER.add(3);
+        
+        assertEquals(0, started);
+        String json = DbMetrics.toJson();
+        assertFalse(json.contains("test.query"), json);
+        assertTrue(json.contains("\"test.counter\":0"), json);
+        assertTrue(json.contains("\"slowQueries\":[]"), json);
+    }
+    
+    @Test
+    void disabledCallsAllocateNothing() {
+        com.sun.management.ThreadMXBean threads = 
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        DbMetrics.setEnabled(false);
+        int calls = 1_000_000;
+        // Warm-up passes load and compile whatever the loop and the measurement touch
+        for (int i = 0; i < 3; i++) {
+            threads.getThreadAllocatedBytes(threadId);
+            disabledLoop(calls);
+        }
+        
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        disabledLoop(calls);
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        
+        assertEquals(0, allocated, "Bytes allocated by " + calls + " disabled start/stop/add calls");
+        // Nanoseconds per call in practice; the bound only catches a disabled path that does real work
+        assertTrue(elapsed / calls < 1_000, (elapsed / calls) + " ns per call");
+    }
+    
+    private static void disabledLoop(int calls) {
+        for (int i = 0; i < calls; i++) {
+            long started = TIMER.start();
+            TIMER.stop(started, 1, "SELECT * FROM customers WHERE mobile = ?", ARGS);
+            COUNTER.add(i);
+        }
+    }
+    
+    @Test
+    void recordsCallsRowsAndSlowQueriesWithoutArgumentValues() {
+        DbMetrics.setEnabled(true);
+        DbMetrics.setSlowQueryThresholdMillis(0);
+        for (int i = 0; i < 3; i++) {
+            TIMER.stop(TIMER.start(), 2, "SELECT * FROM customers WHERE mobile = ?", new Object[]{"9876543210", 7L});
+        }
+        COUNTER.increment();
+        
+        String json = DbMetrics.toJson();
+        assertTrue(json.contains("{\"name\":\"test.query\",\"count\":3,\"rows\":6,"), json);
+        assertTrue(json.contains("\"test.counter\":1"), json);
+        assertTrue(json.contains("\"args\":\"[TEXT(10), INTEGER]\""), json);
+        assertFalse(json.contains("9876543210"), json);
+    }
+    
+    @Test
+    void bucketsStayWithinAnEighthOfTheValue() {
+        for (long nanos = 1; nanos > 0 && nanos < Long.MAX_VALUE / 3; nanos = nanos * 3 + 1) {
+            int bucket = DbMetrics.Timer.bucketOf(nanos);
+            long lower = DbMetrics.Timer.bucketLowerBound(bucket);
+            long upper = DbMetrics.Timer.bucketLowerBound(bucket + 1);
+            assertTrue(lower <= nanos && nanos < upper, nanos + " not in [" + lower + ", " + upper + ")");
+            assertTrue(upper - lower <= Math.max(1, lower / 8), "Bucket too wide at " + nanos);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JdbcLedgerStoreTest {
+    @TempDir
+    Path dir;
+    
+    private JdbcLedgerStore store;
+    
+    @BeforeEach
+    void seed() throws Exception {
+        store = new JdbcLedgerStore("jdbc:sqlite:" + dir.resolve("ledger.db"));
+        store.seed(new LedgerSeeder(7, 200, 2000, BenchmarkLedgers.HISTORY_END_MILLIS));
+    }
+    
+    @AfterEach
+    void close() throws Exception {
+        store.close();
+    }
+    
+    @Test
+    void findsSeededCustomers() {
+        Customer customer = store.getCustomerByMobile(BenchmarkLedgers.mobile(17));
+        assertNotNull(customer);
+        assertEquals(customer.getMobile(), store.getCustomerByEmailId(customer.getEmailId()).getMobile());
+        assertNull(store.getCustomerByMobile("0000000000"));
+    }
+    
+    @Test
+    void transferMovesMoneyAndShowsInHistory() {
+        String from = BenchmarkLedgers.mobile(3);
+        String to = BenchmarkLedgers.mobile(4);
+        double fromBefore = store.getCustomerByMobile(from).getBalance();
+        double toBefore = store.getCustomerByMobile(to).getBalance();
+        
+        long id = store.transfer(from, to, 12.50);
+        
+        assertTrue(id > 0);
+        assertEquals(fromBefore - 12.50, store.getCustomerByMobile(from).getBalance(), 1e-9);
+        assertEquals(toBefore + 12.50, store.getCustomerByMobile(to).getBalance(), 1e-9);
+        List<Transaction> history = store.getTransactionHistory(to);
+        assertTrue(history.stream().anyMatch(t -> t.getTransactionId() == id));
+        assertTrue(store.verifyLedger().isEmpty(), () -> store.verifyLedger().toString());
+    }
+    
+    @Test
+    void seedsTheSameHistoryForTheSameSeedAndEnd() throws Exception {
+        List<String> expected = historyRows(store, BenchmarkLedgers.mobile(0));
+        try (JdbcLedgerStore again = new JdbcLedgerStore("jdbc:sqlite:" + dir.resolve("again.db"))) {
+            again.seed(new LedgerSeeder(7, 200, 2000, BenchmarkLedgers.HISTORY_END_MILLIS));
+            assertEquals(expected, historyRows(again, BenchmarkLedgers.mobile(0)));
+        }
+        // The year before the given end, whenever the test runs
+        for (Transaction t : store.getTransactionHistory(BenchmarkLedgers.mobile(0))) {
+            assertTrue(t.getTimestamp().compareTo("2025-01-01") >= 0 && t.getTimestamp().compareTo("2026-01-01") < 0, 
+                    t.getTimestamp());
+        }
+    }
+    
+    private static List<String> historyRows(JdbcLedgerStore store, String mobile) {
+        List<String> rows = new ArrayList<>();
+        for (Transaction t : store.getTransactionHistory(mobile)) {
+            rows.add(t.getTransactionId() + " " + t.getTimestamp() + " " + t.getFromCustomer() + " " 
+                    + t.getToCustomer() + " " + t.getAmount());
+        }
+        return rows;
+    }
+    
+    @Test
+    void refusesOverdrafts() {
+        String from = BenchmarkLedgers.mobile(5);
+        double balance = store.getCustomerByMobile(from).getBalance();
+        
+        assertEquals(-1, store.transfer(from, BenchmarkLedgers.mobile(6), balance + 1));
+        assertEquals(balance, store.getCustomerByMobile(from).getBalance(), 1e-9);
+    }
+    
+    @Test
+    void bulkTransferFailsOnlyTheItemsItCannotPay() {
+        String rich = BenchmarkLedgers.mobile(10);
+        String poor = BenchmarkLedgers.mobile(11);
+        String to = BenchmarkLedgers.mobile(12);
+        double poorBalance = store.getCustomerByMobile(poor).getBalance();
+        double toBefore = store.getCustomerByMobile(to).getBalance();
+        
+        long[] results = store.bulkTransfer(Arrays.asList(
+                new TransferRequest(rich, to, 5.00),
+                new TransferRequest(rich, "0000000000", 5.00),
+                new TransferRequest(rich, rich, 5.00),
+                new TransferRequest(poor, to, poorBalance),
+                new TransferRequest(poor, to, 1.00),
+                new TransferRequest(rich, to, 2.50)));
+        
+        assertTrue(results[0] > 0);
+        assertEquals(-1, results[1]);
+        assertEquals(-1, results[2]);
+        // Together the poor account's items exceed its balance, so none of them go through
+        assertEquals(-1, results[3]);
+        assertEquals(-1, results[4]);
+        assertTrue(results[5] > results[0]);
+        assertEquals(poorBalance, store.getCustomerByMobile(poor).getBalance(), 1e-9);
+        assertEquals(toBefore + 7.50, store.getCustomerByMobile(to).getBalance(), 1e-9);
+        assertTrue(store.verifyLedger().isEmpty(), () -> store.verifyLedger().toString());
+    }
+    
+    @Test
+    void searchMatchesFilteringTheFullHistory() throws Exception {
+        String mobile = BenchmarkLedgers.mobile(0);
+        List<Transaction> history = store.getTransactionHistory(mobile);
+        Transaction middle = history.get(history.size() / 2);
+        renameCustomer(middle.getFromCustomer().equals(mobile) ? middle.getToCustomer() : middle.getFromCustomer(), 
+                "Zoë Ñúñez-Łukasz");
+        String from = history.get(history.size() * 3 / 4).getTimestamp().substring(0, 10);
+        String to = history.get(history.size() / 4).getTimestamp().substring(0, 10);
+        TransactionSearch[] searches = {
+                new TransactionSearch(mobile, "customer 12", null, null, null, null),
+                new TransactionSearch(mobile, null, 50.0, 150.0, null, null),
+                new TransactionSearch(mobile, null, null, null, from, to),
+                new TransactionSearch(mobile, "Customer 1", 10.0, 400.0, from, to),
+                new TransactionSearch(mobile, "c", null, null, null, null),
+                new TransactionSearch(mobile, "success", null, null, null, null),
+                new TransactionSearch(mobile, "zoë", null, null, null, null),
+                new TransactionSearch(mobile, "ÑÚÑEZ łuk", null, null, null, null),
+                new TransactionSearch(mobile, "zzzz", null, null, null, null)
+        };
+        
+        for (TransactionSearch search : searches) {
+            List<Integer> expected = new ArrayList<>();
+            for (Transaction transaction : history) {
+                if (matches(search, transaction)) {
+                    expected.add(transaction.getTransactionId());
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            for (Transaction transaction : store.searchTransactionHistory(search, null, history.size())) {
+                found.add(transaction.getTransactionId());
+            }
+            assertEquals(expected, found, search.getText() + " " + search.getMinAmount() + " " + search.getFromDate());
+            // Only the last search is meant to come back empty
+            assertEquals(search == searches[searches.length - 1], expected.isEmpty());
+        }
+        // Words too short to look up are dropped; text without a single word matches nothing
+        assertEquals(Arrays.asList("customer", "zo"), 
+                new TransactionSearch(mobile, "Customer 1 x Zo", null, null, null, null).getTerms());
+        assertTrue(store.searchTransactionHistory(new TransactionSearch(mobile, "!!", null, null, null, null), 
+                null, history.size()).isEmpty());
+    }
+    
+    private void renameCustomer(String mobile, String name) throws Exception {
+        synchronized (store) {
+            try (PreparedStatement update = store.getConnection().prepareStatement(
+                    "UPDATE " + LedgerSchema.TABLE_CUSTOMERS + " SET " + LedgerSchema.COLUMN_NAME + " = ? WHERE " 
+                            + LedgerSchema.COLUMN_MOBILE + " = ?")) {
+                update.setString(1, name);
+                update.setString(2, mobile);
+                assertEquals(1, update.executeUpdate());
+            }
+        }
+    }
+    
+    private boolean matches(TransactionSearch search, Transaction transaction) {
+        String timestamp = transaction.getTimestamp();
+        double amount = transaction.getAmount();
+        if ((search.getFromDate() != null && timestamp.compareTo(search.getFromDate()) < 0)
+                || (search.getToDate() != null && timestamp.compareTo(search.getToDate()) >= 0)
+                || (search.getMinAmount() != null && amount < search.getMinAmount())
+                || (search.getMaxAmount() != null && amount > search.getMaxAmount())) {
+            return false;
+        }
+        String counterparty = transaction.getFromCustomer().equals(search.getCustomerMobile()) 
+                ? transaction.getToCustomer() : transaction.getFromCustomer();
+        Customer customer = store.getCustomerByMobile(counterparty);
+        List<String> words = new ArrayList<>();
+        for (String field : new String[]{customer.getName(), customer.getMobile(), customer.getEmailId()}) {
+            words.addAll(Arrays.asList(field.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")));
+        }
+        for (String term : search.getTerms()) {
+            boolean found = transaction.getStatus().toLowerCase(Locale.ROOT).startsWith(term);
+            for (int i = 0; i < words.size() && !found; i++) {
+                found = words.get(i).startsWith(term);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,316 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs OutboxSync against JdbcLedgerStore and a local HTTP server that
+ * records every batch it is sent. The worker's warnings are collected
+ * rather than printed, so the tests that provoke them can count them.
+ */
+class OutboxSyncTest {
+    private static final int TRANSFERS = 250;
+    private static final long TIMEOUT_MS = 15_000;
+    private static final Logger SYNC_LOG = Logger.getLogger(OutboxSync.class.getName());
+    
+    @TempDir
+    Path dir;
+    
+    private JdbcLedgerStore store;
+    private HttpServer server;
+    private OutboxSync sync;
+    // Responses to send, in order, before answering 200
+    private final List<Integer> failures = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Post> posts = Collections.synchronizedList(new ArrayList<Post>());
+    private final List<LogRecord> warnings = Collections.synchronizedList(new ArrayList<LogRecord>());
+    private final Handler collectWarnings = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            warnings.add(record);
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+    };
+    
+    private static class Post {
+        final long at = System.currentTimeMillis();
+        final String batchKey;
+        final List<String> entryKeys;
+        final int status;
+        
+        Post(String batchKey, List<String> entryKeys, int status) {
+            this.batchKey = batchKey;
+            this.entryKeys = entryKeys;
+            this.status = status;
+        }
+    }
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new JdbcLedgerStore("jdbc:sqlite:" + dir.resolve("ledger.db"));
+        store.seed(new LedgerSeeder(3, 20, 0, BenchmarkLedgers.HISTORY_END_MILLIS));
+        // Seeding bypasses the outbox; real transfers are queued by its trigger
+        for (int i = 0; i < TRANSFERS; i++) {
+            String from = BenchmarkLedgers.mobile(i % 20);
+            assertTrue(store.transfer(from, BenchmarkLedgers.mobile((i + 1) % 20), 1.00) > 0);
+        }
+        
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ledger", this::receive);
+        server.start();
+        SYNC_LOG.setUseParentHandlers(false);
+        SYNC_LOG.addHandler(collectWarnings);
+    }
+    
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (sync != null) {
+            sync.shutdown();
+        }
+        server.stop(0);
+        store.close();
+        SYNC_LOG.removeHandler(collectWarnings);
+        SYNC_LOG.setUseParentHandlers(true);
+    }
+    
+    private void receive(HttpExchange exchange) throws IOException {
+        List<String> keys = new ArrayList<>();
+        try (BufferedReader body = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(exchange.getRequestBody()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = body.readLine()) != null) {
+                int start = line.indexOf("\"idempotency_key\":\"") + "\"idempotency_key\":\"".length();
+                keys.add(line.substring(start, line.indexOf('"', start)));
+            }
+        }
+        Integer failure = failures.isEmpty() ? null : failures.remove(0);
+        int status = failure != null ? failure : 200;
+        posts.add(new Post(exchange.getRequestHeaders().getFirst("Idempotency-Key"), keys, status));
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+    
+    private OutboxSync.Transport transport() throws IOException {
+        return new OutboxSync.HttpTransport(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/ledger"));
+    }
+    
+    private long outboxSize() throws SQLException {
+        synchronized (store) {
+            try (Statement statement = store.getConnection().createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + LedgerSchema.TABLE_OUTBOX)) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+    
+    private void awaitEmptyOutbox() throws Exception {
+        await(() -> {
+            try {
+                return outboxSize() == 0;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out");
+            }
+            Thread.sleep(10);
+        }
+    }
+    
+    /** Entry keys the server accepted, failing on any it accepted twice. */
+    private Set<String> acceptedKeys() {
+        Set<String> accepted = new HashSet<>();
+        synchronized (posts) {
+            for (Post post : posts) {
+                if (post.status == 200) {
+                    for (String key : post.entryKeys) {
+                        assertTrue(accepted.add(key), "Delivered twice: " + key);
+                    }
+                }
+            }
+        }
+        return accepted;
+    }
+    
+    @Test
+    void deliversEveryTransferOnce() throws Exception {
+        sync = new OutboxSync(store, transport(), "device-1", 40, 2);
+        sync.requestSync();
+        awaitEmptyOutbox();
+        
+        Set<String> accepted = acceptedKeys();
+        assertEquals(TRANSFERS, accepted.size());
+        assertTrue(accepted.stream().allMatch(key -> key.startsWith("device-1:")));
+    }
+    
+    @Test
+    void retriesTheSameBatchAfterBackoffWhenTheServerIsUnavailable() throws Exception {
+        failures.add(503);
+        sync = new OutboxSync(store, transport(), "device-1", TRANSFERS, 1);
+        sync.requestSync();
+        awaitEmptyOutbox();
+        
+        assertEquals(2, posts.size());
+        Post failed = posts.get(0);
+        Post retried = posts.get(1);
+        assertEquals(503, failed.status);
+        // Same keys on the retry, so a server that did apply the first attempt can drop it
+        assertEquals(failed.batchKey, retried.batchKey);
+        assertEquals(failed.entryKeys, retried.entryKeys);
+        // First backoff is 1 s with jitter in its upper half
+        long gap = retried.at - failed.at;
+        assertTrue(gap >= 500, "Retried after only " + gap + " ms");
+        assertEquals(TRANSFERS, acceptedKeys().size());
+    }
+    
+    @Test
+    void rejectsBatchesTheServerRefuses() throws Exception {
+        failures.add(400);
+        sync = new OutboxSync(store, transport(), "device-1", 50, 1);
+        sync.requestSync();
+        await(() -> posts.size() == TRANSFERS / 50);
+        
+        // The refused batch stays in the outbox, marked rejected, and no longer blocks the others
+        assertEquals(400, posts.get(0).status);
+        assertEquals(TRANSFERS - 50, acceptedKeys().size());
+        await(() -> {
+            try {
+                return outboxSize() == 50;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals(-1, store.nextOutboxAttemptAt());
+    }
+    
+    @Test
+    void keepsSyncingAfterTheStoreFails() throws Exception {
+        AtomicInteger claimFailures = new AtomicInteger(2);
+        LedgerStore flaky = (LedgerStore) Proxy.newProxyInstance(LedgerStore.class.getClassLoader(),
+                new Class<?>[]{LedgerStore.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("claimOutboxBatch") && claimFailures.getAndDecrement() > 0) {
+                        throw new IllegalStateException("database is locked");
+                    }
+                    try {
+                        return method.invoke(store, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        sync = new OutboxSync(flaky, transport(), "device-1", TRANSFERS, 1);
+        sync.requestSync();
+        awaitEmptyOutbox();
+        
+        assertTrue(claimFailures.get() < 0);
+        assertEquals(TRANSFERS, acceptedKeys().size());
+        assertEquals(2, warnings.size());
+    }
+    
+    @Test
+    void retriesTheBatchWhenTheStoreCannotRecordTheResponse() throws Exception {
+        AtomicInteger ackFailures = new AtomicInteger(1);
+        LedgerStore flaky = (LedgerStore) Proxy.newProxyInstance(LedgerStore.class.getClassLoader(),
+                new Class<?>[]{LedgerStore.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("acknowledgeOutbox") && ackFailures.getAndDecrement() > 0) {
+                        throw new IllegalStateException("database is locked");
+                    }
+                    try {
+                        return method.invoke(store, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        sync = new OutboxSync(flaky, transport(), "device-1", TRANSFERS, 1);
+        sync.requestSync();
+        awaitEmptyOutbox();
+        
+        // Accepted twice under the same keys, which the backend drops; without the retry it waits out the lease
+        assertEquals(2, posts.size());
+        assertEquals(posts.get(0).batchKey, posts.get(1).batchKey);
+        assertEquals(posts.get(0).entryKeys, posts.get(1).entryKeys);
+        assertEquals(200, posts.get(1).status);
+        assertEquals(1, warnings.size());
+    }
+    
+    @Test
+    void shutsDownQuietlyWithABatchInFlight() throws Exception {
+        CountDownLatch posting = new CountDownLatch(1);
+        Semaphore release = new Semaphore(0);
+        List<Throwable> uncaught = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.add(e));
+        try {
+            // Like a blocking socket write, the post ignores the interrupt from shutdownNow
+            sync = new OutboxSync(store, (batchKey, body) -> {
+                posting.countDown();
+                release.acquireUninterruptibly();
+                return 200;
+            }, "device-1", TRANSFERS, 1);
+            sync.requestSync();
+            assertTrue(posting.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            
+            sync.shutdown();
+            sync.requestSync();
+            release.release();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("OnePay-sync")) {
+                    thread.join(TIMEOUT_MS);
+                }
+            }
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+        
+        assertEquals(Collections.emptyList(), uncaught);
+        assertEquals(Collections.emptyList(), warnings);
+        // The sent batch was still acknowledged
+        assertEquals(0, outboxSize());
+    }
+}
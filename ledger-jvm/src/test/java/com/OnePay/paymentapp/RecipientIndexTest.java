@@ -0,0 +1,86 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Checks RecipientIndex against a plain startsWith scan over the same customers. */
+class RecipientIndexTest {
+    private static final String[] WORDS = {"Émile", "émilie", "ÖZGÜR", "Zoë", "anna", "Ann", "ANNA-marie", "李",
+            "李小龙", "a", "", "  b"};
+    private static final String[] PREFIXES = {"é", "emi", "ÉMI", "ann", "anna", "李", "1", "12", "zoë", "b", "a ",
+            "özg", "@x"};
+    
+    @Test
+    void matchesAScanWhileCustomersArriveOneByOne() {
+        Random random = new Random(5);
+        RecipientIndex index = new RecipientIndex();
+        List<String[]> customers = new ArrayList<>();
+        // Past the pending-tail limit, so both the sorted part and the tail are searched
+        for (int id = 0; id < 12_000; id++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            String mobile = random.nextInt(10) == 0 ? null : String.valueOf(random.nextInt(100_000));
+            String emailId = WORDS[random.nextInt(WORDS.length)] + "@x";
+            index.add(id, name, mobile, emailId);
+            customers.add(new String[]{name, mobile, emailId});
+            if (id % 1999 == 0) {
+                for (String prefix : PREFIXES) {
+                    assertEquals(scan(customers, prefix), ids(index.search(prefix, Integer.MAX_VALUE)), prefix);
+                }
+            }
+        }
+    }
+    
+    @Test
+    void returnsMobileMatchesFirstAndStopsAtTheLimit() {
+        RecipientIndex index = new RecipientIndex();
+        index.beginBulkLoad();
+        index.add(1, "Ravi 9000", "8000000000", "ravi@OnePay.com");
+        index.add(2, "Meena", "9000000001", "meena@OnePay.com");
+        index.add(3, "Arun", "9000000002", "arun@OnePay.com");
+        index.compact();
+        
+        List<Customer> results = index.search("9000", 2);
+        
+        assertEquals(2, results.size());
+        assertEquals("9000000001", results.get(0).getMobile());
+        assertEquals("Meena", results.get(0).getName());
+        assertEquals("meena@OnePay.com", results.get(0).getEmailId());
+        assertTrue(index.search("  ", 5).isEmpty());
+        assertTrue(index.estimateMemoryBytes() > 0);
+    }
+    
+    private static Set<Integer> ids(List<Customer> customers) {
+        Set<Integer> ids = new HashSet<>();
+        for (Customer customer : customers) {
+            assertTrue(ids.add(customer.getId()), "Returned twice: " + customer.getId());
+        }
+        return ids;
+    }
+    
+    private static Set<Integer> scan(List<String[]> customers, String prefix) {
+        String key = prefix.trim().toLowerCase(Locale.ROOT);
+        Set<Integer> ids = new HashSet<>();
+        for (int id = 0; id < customers.size(); id++) {
+            String name = customers.get(id)[0].toLowerCase(Locale.ROOT);
+            String mobile = customers.get(id)[1];
+            boolean match = (mobile != null && mobile.startsWith(key))
+                    || customers.get(id)[2].toLowerCase(Locale.ROOT).startsWith(key) || name.startsWith(key);
+            for (int space = name.indexOf(' '); space >= 0 && !match; space = name.indexOf(' ', space + 1)) {
+                match = space + 1 < name.length() && name.charAt(space + 1) != ' '
+                        && name.startsWith(key, space + 1);
+            }
+            if (match) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
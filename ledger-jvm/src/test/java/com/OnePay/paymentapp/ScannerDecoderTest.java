@@ -0,0 +1,46 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class ScannerDecoderTest {
+    private static final String PAYLOAD = "1234567890ACC12345678901234567890";
+    
+    private final ScannerDecoder decoder = new ScannerDecoder();
+    
+    @Test
+    void decodesCameraFrames() {
+        for (int rotation : new int[]{0, 90}) {
+            QrPayload payload = decoder.decodeFrame(QrFrames.cameraFrame(PAYLOAD, 640, 480, 240), 640, 480, rotation);
+            
+            assertNotNull(payload, "rotation " + rotation);
+            assertEquals("1234567890", payload.getMobile());
+            assertEquals("ACC1234567890", payload.getAccountNumber());
+            assertEquals("1234567890", payload.getUnique10Digit());
+        }
+    }
+    
+    @Test
+    void ignoresFramesWithoutAPaymentCode() {
+        assertNull(decoder.decodeFrame(QrFrames.cameraFrame(null, 640, 480, 0), 640, 480, 0));
+        assertNull(decoder.decodeFrame(QrFrames.cameraFrame("https://example.com", 640, 480, 240), 640, 480, 90));
+    }
+    
+    @Test
+    void parsesCodesFromCustomers() {
+        Customer customer = new Customer();
+        customer.setMobile("9876543210");
+        customer.setAccountNumber("ACC0000123456");
+        customer.setUnique10Digit("5550001111");
+        
+        QrPayload payload = QrPayload.parse(customer.generateQRData());
+        
+        assertEquals("9876543210", payload.getMobile());
+        assertEquals("ACC0000123456", payload.getAccountNumber());
+        assertEquals("5550001111", payload.getUnique10Digit());
+        assertNull(QrPayload.parse("12345"));
+    }
+}
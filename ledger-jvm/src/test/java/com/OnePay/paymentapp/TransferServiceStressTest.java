@@ -0,0 +1,101 @@
+package com.OnePay.paymentapp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Hammers TransferService from 1 to N threads over a few hot accounts, with
+ * amounts large enough that many transfers must be refused, and checks that
+ * no money is created or lost. Prints transfers per second for each thread
+ * count; the store serializes its writes, so the gain comes from the checks
+ * and lock waits that overlap.
+ */
+class TransferServiceStressTest {
+    private static final int ACCOUNTS = 16;
+    private static final int TRANSFERS_PER_RUN = 800;
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void conservesMoneyAtEveryThreadCount() throws Exception {
+        try (JdbcLedgerStore store = new JdbcLedgerStore("jdbc:sqlite:" + dir.resolve("ledger.db"))) {
+            store.seed(new LedgerSeeder(11, ACCOUNTS, 0, BenchmarkLedgers.HISTORY_END_MILLIS));
+            TransferService service = new TransferService(store);
+            double total = totalBalance(store);
+            
+            // -Dstress.maxThreads=32 to go past the core count
+            int maxThreads = Integer.getInteger("stress.maxThreads",
+                    Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                long started = System.nanoTime();
+                int succeeded = run(service, threads);
+                double seconds = (System.nanoTime() - started) / 1e9;
+                System.out.printf("TransferService: %d thread(s), %d of %d transfers succeeded, %.0f transfers/s%n",
+                        threads, succeeded, TRANSFERS_PER_RUN, TRANSFERS_PER_RUN / seconds);
+                
+                assertTrue(succeeded > 0);
+                assertEquals(total, totalBalance(store), 1e-6);
+                for (int i = 0; i < ACCOUNTS; i++) {
+                    assertTrue(store.getCustomerByMobile(BenchmarkLedgers.mobile(i)).getBalance() >= 0);
+                }
+            }
+            assertTrue(store.verifyLedger().isEmpty(), () -> store.verifyLedger().toString());
+        }
+    }
+    
+    /** Runs TRANSFERS_PER_RUN random transfers split over the threads; @return how many went through */
+    private static int run(TransferService service, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                int share = TRANSFERS_PER_RUN / threads;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int succeeded = 0;
+                    for (int i = 0; i < share; i++) {
+                        String from = BenchmarkLedgers.mobile(random.nextInt(ACCOUNTS));
+                        String to = BenchmarkLedgers.mobile(random.nextInt(ACCOUNTS));
+                        // Up to 50,000 against opening balances of 1,000 to 101,000
+                        double amount = (1 + random.nextInt(5_000_000)) / 100.0;
+                        if (service.transfer(from, to, amount) > 0) {
+                            succeeded++;
+                        }
+                    }
+                    return succeeded;
+                }));
+            }
+            start.countDown();
+            int succeeded = 0;
+            for (Future<Integer> result : results) {
+                succeeded += result.get(60, TimeUnit.SECONDS);
+            }
+            return succeeded;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private static double totalBalance(LedgerStore store) {
+        double total = 0;
+        for (int i = 0; i < ACCOUNTS; i++) {
+            total += store.getCustomerByMobile(BenchmarkLedgers.mobile(i)).getBalance();
+        }
+        return total;
+    }
+}
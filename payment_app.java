@@ -3,32 +3,68 @@ package com.OnePay.paymentapp;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 
 public class MainActivity extends AppCompatActivity {
-    private DatabaseHelper dbHelper;
+    private PaymentRepository repository;
     private TextView welcomeText, balanceText;
-    private Button generateQRBtn, sendMoneyBtn, receiveMoneyBtn, 
+    private Button generateQRBtn, scanToPayBtn, sendMoneyBtn, receiveMoneyBtn, 
                    transactionHistoryBtn, chatbotBtn;
+    // SystemClock.uptimeMillis() when reportFullyDrawn() was called, or 0 before that
+    private long fullyDrawnAt;
+    // Mobile the balance listener is registered for, or null
+    private String watchedMobile;
+    private final ChangeTracker.Listener balanceListener = (mobile, changes) -> {
+        if ((changes & ChangeTracker.BALANCE) != 0) {
+            refreshBalance();
+        }
+    };
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
-        dbHelper = new DatabaseHelper(this);
         initializeViews();
+        // Target screens are only resolved on click, so the ZXing-backed
+        // ones are not loaded until the user opens them
         setupClickListeners();
+        // The session copy is enough for the first frame; the live balance follows
         loadCurrentUser();
+        
+        repository = PaymentRepository.getInstance(this);
+        // Create/open the database in the background before any screen needs it
+        repository.warmUp();
+        watchCurrentUser();
+        refreshBalance();
+    }
+    
+    @Override
+    protected void onDestroy() {
+        if (watchedMobile != null) {
+            repository.removeCustomerListener(watchedMobile, balanceListener);
+        }
+        super.onDestroy();
+    }
+    
+    private void watchCurrentUser() {
+        // Incoming credits and our own transfers both arrive through the listener
+        Customer currentUser = SessionManager.getCurrentUser();
+        if (currentUser != null) {
+            watchedMobile = currentUser.getMobile();
+            repository.addCustomerListener(watchedMobile, balanceListener);
+        }
     }
     
     private void initializeViews() {
         welcomeText = findViewById(R.id.welcomeText);
         balanceText = findViewById(R.id.balanceText);
         generateQRBtn = findViewById(R.id.generateQRBtn);
+        scanToPayBtn = findViewById(R.id.scanToPayBtn);
         sendMoneyBtn = findViewById(R.id.sendMoneyBtn);
         receiveMoneyBtn = findViewById(R.id.receiveMoneyBtn);
         transactionHistoryBtn = findViewById(R.id.transactionHistoryBtn);
@@ -39,6 +75,9 @@ public class MainActivity extends AppCompatActivity {
         generateQRBtn.setOnClickListener(v -> 
             startActivity(new Intent(this, QRCodeActivity.class)));
         
+        scanToPayBtn.setOnClickListener(v -> 
+            startActivity(new Intent(this, ScanToPayActivity.class)));
+        
         sendMoneyBtn.setOnClickListener(v -> 
             startActivity(new Intent(this, SendMoneyActivity.class)));
         
@@ -60,6 +99,99 @@ public class MainActivity extends AppCompatActivity {
             balanceText.setText("Balance: $" + currentUser.getBalance());
         }
     }
+    
+    private void refreshBalance() {
+        Customer currentUser = SessionManager.getCurrentUser();
+        if (currentUser == null) {
+            onBalanceDisplayed();
+            return;
+        }
+        repository.getCustomerByMobile(currentUser.getMobile(), (customer, error) -> {
+            if (isDestroyed()) {
+                return;
+            }
+            if (error == null && customer != null) {
+                balanceText.setText("Balance: $" + customer.getBalance());
+                // Other screens read the session copy, so keep it current
+                SessionManager.setCurrentUser(customer);
+            }
+            onBalanceDisplayed();
+        });
+    }
+    
+    private void onBalanceDisplayed() {
+        // Marks the end of startup for "am start -W" and the "Fully drawn" log line
+        if (fullyDrawnAt == 0) {
+            fullyDrawnAt = SystemClock.uptimeMillis();
+            reportFullyDrawn();
+        }
+    }
+    
+    /** When startup finished on the uptime clock, or 0 if it has not yet; read on the main thread. */
+    long getFullyDrawnAt() {
+        return fullyDrawnAt;
+    }
+}
+
+// OnePayApplication.java
+package com.OnePay.paymentapp;
+
+import android.app.Application;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.UUID;
+
+/**
+ * Owns process-wide resources. The database itself is opened lazily by the
+ * first caller of {@link DatabaseHelper#getInstance}, not here, so launching
+ * the app does not wait on disk.
+ */
+public class OnePayApplication extends Application {
+    private static final String PREFS_NAME = "onepay";
+    private static final String PREF_DEVICE_ID = "device_id";
+    
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Builds without an endpoint keep transfers local only
+        String endpoint = getString(R.string.sync_endpoint);
+        if (!endpoint.isEmpty()) {
+            try {
+                PaymentRepository.getInstance(this)
+                        .startSync(new OutboxSync.HttpTransport(new URL(endpoint)), deviceId());
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("Bad sync_endpoint: " + endpoint, e);
+            }
+        }
+    }
+    
+    /** Random per install, so idempotency keys from two devices never collide. */
+    private String deviceId() {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        String id = prefs.getString(PREF_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            prefs.edit().putString(PREF_DEVICE_ID, id).apply();
+        }
+        return id;
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Drops page caches of idle connections; they refill on demand
+            SQLiteDatabase.releaseMemory();
+        }
+    }
+    
+    @Override
+    public void onTerminate() {
+        DatabaseHelper.getInstance(this).close();
+        super.onTerminate();
+    }
 }
 
 // DatabaseHelper.java
@@ -70,72 +202,295 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static com.OnePay.paymentapp.LedgerSchema.*;
 
-public class DatabaseHelper extends SQLiteOpenHelper {
-    private static final String DATABASE_NAME = "OnePay.db";
-    private static final int DATABASE_VERSION = 1;
+public class DatabaseHelper extends SQLiteOpenHelper implements LedgerStore {
+    static final String DATABASE_NAME = "OnePay.db";
+    private static final int DATABASE_VERSION = 9;
+    // Built ahead of time with the full schema, indexes and sample data; optional
+    private static final String PREBUILT_ASSET = "databases/" + DATABASE_NAME;
+    private static final int ASSET_COPY_BUFFER_BYTES = 64 * 1024;
     
-    // Customer table
-    private static final String TABLE_CUSTOMERS = "customers";
-    private static final String COLUMN_ID = "id";
-    private static final String COLUMN_NAME = "name";
-    private static final String COLUMN_MOBILE = "mobile";
-    private static final String COLUMN_ACCOUNT_NUMBER = "account_number";
-    private static final String COLUMN_UNIQUE_KEY = "unique_key";
-    private static final String COLUMN_EMAIL_ID = "email_id";
-    private static final String COLUMN_BALANCE = "balance";
-    private static final String COLUMN_UNIQUE_10_DIGIT = "unique_10_digit";
+    // Shared by every helper instance so a write through one is seen by all
+    private static final CustomerCache customerCache = new CustomerCache(256);
+    // Shared for the same reason; listeners are called on the main thread
+    private static final ChangeTracker changeTracker = new ChangeTracker(new Handler(Looper.getMainLooper()));
     
-    // Transaction table
-    private static final String TABLE_TRANSACTIONS = "transactions";
-    private static final String COLUMN_TRANS_ID = "transaction_id";
-    private static final String COLUMN_FROM_CUSTOMER = "from_customer";
-    private static final String COLUMN_TO_CUSTOMER = "to_customer";
-    private static final String COLUMN_AMOUNT = "amount";
-    private static final String COLUMN_TIMESTAMP = "timestamp";
-    private static final String COLUMN_STATUS = "status";
-    
-    public DatabaseHelper(Context context) {
+    private static final String CUSTOMER_BY_MOBILE_SQL = CUSTOMER_SELECT_SQL + " WHERE c." + COLUMN_MOBILE + "=?";
+    private static final String CUSTOMER_BY_EMAIL_SQL = CUSTOMER_SELECT_SQL + " WHERE c." + COLUMN_EMAIL_ID + "=?";
+    private static final String CUSTOMER_BY_UNIQUE_10_DIGIT_SQL = CUSTOMER_SELECT_SQL 
+            + " WHERE c." + COLUMN_UNIQUE_10_DIGIT + "=?";
+    
+    // Field metrics, recorded only while DbMetrics is enabled
+    private static final DbMetrics.Timer CUSTOMER_BY_MOBILE_TIMER = DbMetrics.timer("getCustomerByMobile");
+    private static final DbMetrics.Timer CUSTOMER_BY_EMAIL_TIMER = DbMetrics.timer("getCustomerByEmailId");
+    private static final DbMetrics.Timer CUSTOMER_BY_UNIQUE_10_DIGIT_TIMER = 
+            DbMetrics.timer("getCustomerByUnique10Digit");
+    private static final DbMetrics.Timer ALL_CUSTOMERS_TIMER = DbMetrics.timer("getAllCustomers");
+    private static final DbMetrics.Timer RECIPIENT_INDEX_TIMER = DbMetrics.timer("buildRecipientIndex");
+    private static final DbMetrics.Timer UPDATE_BALANCE_TIMER = DbMetrics.timer("updateBalance");
+    private static final DbMetrics.Timer ADD_TRANSACTION_TIMER = DbMetrics.timer("addTransaction");
+    private static final DbMetrics.Timer TRANSFER_TIMER = DbMetrics.timer("transfer");
+    private static final DbMetrics.Timer BULK_TRANSFER_TIMER = DbMetrics.timer("bulkTransfer");
+    private static final DbMetrics.Timer HISTORY_TIMER = DbMetrics.timer("getTransactionHistory");
+    private static final DbMetrics.Timer HISTORY_PAGE_TIMER = DbMetrics.timer("getTransactionHistoryPage");
+    private static final DbMetrics.Timer EXPORT_TIMER = DbMetrics.timer("exportTransactionHistory");
+    private static final DbMetrics.Timer SEARCH_TIMER = DbMetrics.timer("searchTransactionHistory");
+    private static final DbMetrics.Timer SUMMARIES_TIMER = DbMetrics.timer("getActivitySummaries");
+    private static final DbMetrics.Timer ADD_CHAT_TIMER = DbMetrics.timer("addChatMessage");
+    private static final DbMetrics.Timer CHAT_PAGE_TIMER = DbMetrics.timer("getChatMessages");
+    private static final DbMetrics.Timer COMPACT_TIMER = DbMetrics.timer("compactLedger");
+    private static final DbMetrics.Timer VERIFY_TIMER = DbMetrics.timer("verifyLedger");
+    private static final DbMetrics.Timer SEED_TIMER = DbMetrics.timer("seedSyntheticData");
+    private static final DbMetrics.Timer REGISTER_TIMER = DbMetrics.timer("registerCustomers");
+    private static final DbMetrics.Timer INSTALL_PREBUILT_TIMER = DbMetrics.timer("installPrebuiltDatabase");
+    private static final DbMetrics.Counter CACHE_HITS = DbMetrics.counter("customerCache.hits");
+    private static final DbMetrics.Counter CACHE_MISSES = DbMetrics.counter("customerCache.misses");
+    private static final DbMetrics.Counter REJECTED_TRANSFERS = DbMetrics.counter("transfer.rejected");
+    private static final DbMetrics.Counter FAILED_BULK_ITEMS = DbMetrics.counter("bulkTransfer.failedItems");
+    
+    // Page cache per connection, in KiB (negative values are sizes, not page counts)
+    private static final int CACHE_SIZE_KIB = 2048;
+    // Truncate the WAL back to this size after checkpoints
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 1024 * 1024;
+    private static final int MAX_SQL_CACHE_SIZE = 50;
+    
+    private static DatabaseHelper instance;
+    
+    private final Context context;
+    // Set once the prebuilt asset has been installed or found unnecessary
+    private volatile boolean prebuiltChecked;
+    // Built on first use by getRecipientIndex()
+    private RecipientIndex recipientIndex;
+    // Highest customer id in recipientIndex
+    private int recipientIndexedThroughId;
+    // Highest ledger entry already folded into snapshots; -1 until first read
+    private long snapshotWatermark = -1;
+    
+    /**
+     * Returns the process-wide helper. Every screen shares it so there is one
+     * connection pool on OnePay.db rather than one per Activity.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+    
+    /** Publishes the customers whose balance or history each committed write changed. */
+    public ChangeTracker getChangeTracker() {
+        return changeTracker;
+    }
+    
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        installPrebuiltDatabase();
+        return super.getWritableDatabase();
+    }
+    
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        installPrebuiltDatabase();
+        return super.getReadableDatabase();
+    }
+    
+    /**
+     * On first run, copies the prebuilt OnePay.db from the APK assets so the
+     * device opens a ready, indexed database instead of building one in
+     * onCreate. This happens on whichever thread opens the database first,
+     * normally the repository's write thread. An asset from an older schema
+     * version is migrated by onUpgrade as usual, and a build without the
+     * asset falls back to onCreate.
+     */
+    private void installPrebuiltDatabase() {
+        if (prebuiltChecked) {
+            return;
+        }
+        synchronized (this) {
+            if (prebuiltChecked) {
+                return;
+            }
+            File target = context.getDatabasePath(DATABASE_NAME);
+            if (!target.exists()) {
+                long started = INSTALL_PREBUILT_TIMER.start();
+                boolean installed = copyPrebuiltAsset(target);
+                INSTALL_PREBUILT_TIMER.stop(started, installed ? 1 : 0);
+            }
+            prebuiltChecked = true;
+        }
+    }
+    
+    private boolean copyPrebuiltAsset(File target) {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            return false;
+        }
+        // Copied under a temporary name so a crash mid-copy never leaves a torn database
+        File partial = new File(target.getPath() + ".partial");
+        try (InputStream in = context.getAssets().open(PREBUILT_ASSET);
+             FileOutputStream out = new FileOutputStream(partial)) {
+            byte[] buffer = new byte[ASSET_COPY_BUFFER_BYTES];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        } catch (FileNotFoundException e) {
+            // No prebuilt asset in this build
+            partial.delete();
+            return false;
+        } catch (IOException e) {
+            partial.delete();
+            return false;
+        }
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            return false;
+        }
+        return true;
+    }
+    
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Readers no longer block the writer and commits append to the WAL
+        // instead of rewriting the rollback journal. WAL also lets the
+        // framework open extra read-only connections for parallel readers.
+        db.enableWriteAheadLogging();
+        db.setMaxSqlCacheSize(MAX_SQL_CACHE_SIZE);
+        db.execSQL("PRAGMA cache_size=-" + CACHE_SIZE_KIB);
+        runPragma(db, "PRAGMA journal_size_limit=" + JOURNAL_SIZE_LIMIT_BYTES);
+    }
+    
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        // PRAGMAs that echo a result row must be stepped through a cursor
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
     
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create customers table
-        String CREATE_CUSTOMERS_TABLE = "CREATE TABLE " + TABLE_CUSTOMERS + "("
-                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + COLUMN_NAME + " TEXT,"
-                + COLUMN_MOBILE + " TEXT UNIQUE,"
-                + COLUMN_ACCOUNT_NUMBER + " TEXT UNIQUE,"
-                + COLUMN_UNIQUE_KEY + " TEXT UNIQUE,"
-                + COLUMN_EMAIL_ID + " TEXT UNIQUE,"
-                + COLUMN_BALANCE + " REAL,"
-                + COLUMN_UNIQUE_10_DIGIT + " TEXT UNIQUE" + ")";
-        
-        // Create transactions table
-        String CREATE_TRANSACTIONS_TABLE = "CREATE TABLE " + TABLE_TRANSACTIONS + "("
-                + COLUMN_TRANS_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + COLUMN_FROM_CUSTOMER + " TEXT,"
-                + COLUMN_TO_CUSTOMER + " TEXT,"
-                + COLUMN_AMOUNT + " REAL,"
-                + COLUMN_TIMESTAMP + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
-                + COLUMN_STATUS + " TEXT" + ")";
-        
         db.execSQL(CREATE_CUSTOMERS_TABLE);
         db.execSQL(CREATE_TRANSACTIONS_TABLE);
+        createTransactionIndexes(db);
+        db.execSQL(CREATE_LEDGER_TABLE);
+        db.execSQL(CREATE_LEDGER_INDEX);
+        db.execSQL(CREATE_SUMMARIES_TABLE);
+        db.execSQL(CREATE_SUMMARIES_TRIGGER);
+        db.execSQL(CREATE_CHAT_TABLE);
+        db.execSQL(CREATE_SEARCH_TABLE);
+        createSearchTriggers(db);
+        db.execSQL(CREATE_OUTBOX_TABLE);
+        db.execSQL(CREATE_OUTBOX_INDEX);
+        db.execSQL(CREATE_OUTBOX_TRIGGER);
+        db.execSQL(CREATE_SEQUENCES_TABLE);
+        db.execSQL(INIT_CUSTOMER_SEQUENCE_SQL);
         
         // Insert sample data
         insertSampleData(db);
+        openAccounts(db, 0);
     }
     
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CUSTOMERS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRANSACTIONS);
-        onCreate(db);
+        // Migrate step by step so existing customers and transactions are kept
+        if (oldVersion < 2) {
+            createTransactionIndexes(db);
+        }
+        if (oldVersion < 3) {
+            db.execSQL(ADD_SNAPSHOT_COLUMN_SQL);
+            db.execSQL(CREATE_LEDGER_TABLE);
+            db.execSQL(CREATE_LEDGER_INDEX);
+            // Current balances become opening entries
+            openAccounts(db, 0);
+        }
+        if (oldVersion < 4) {
+            db.execSQL(CREATE_SUMMARIES_TABLE);
+            db.execSQL(REBUILD_SUMMARIES_SQL);
+            db.execSQL(CREATE_SUMMARIES_TRIGGER);
+        }
+        if (oldVersion < 5) {
+            db.execSQL(CREATE_CHAT_TABLE);
+        }
+        if (oldVersion < 6) {
+            // The history indexes gained the amount column
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_TRANS_FROM);
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_TRANS_TO);
+            createTransactionIndexes(db);
+            db.execSQL(CREATE_SEARCH_TABLE);
+            db.execSQL(REBUILD_SEARCH_SQL);
+            createSearchTriggers(db);
+        }
+        if (oldVersion < 7) {
+            // Only transfers from here on are synced; earlier ones predate the backend
+            db.execSQL(CREATE_OUTBOX_TABLE);
+            db.execSQL(CREATE_OUTBOX_INDEX);
+            db.execSQL(CREATE_OUTBOX_TRIGGER);
+        }
+        if (oldVersion < 8) {
+            // Existing identifiers are kept; registerCustomers steps over any they overlap
+            db.execSQL(CREATE_SEQUENCES_TABLE);
+            db.execSQL(INIT_CUSTOMER_SEQUENCE_SQL);
+        }
+        if (oldVersion < 9) {
+            // The search index moved to the unicode61 tokenizer; the triggers name it, so they stay
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_SEARCH);
+            db.execSQL(CREATE_SEARCH_TABLE);
+            db.execSQL(REBUILD_SEARCH_SQL);
+        }
+    }
+    
+    private void createTransactionIndexes(SQLiteDatabase db) {
+        for (String createIndex : CREATE_TRANSACTION_INDEXES) {
+            db.execSQL(createIndex);
+        }
+    }
+    
+    private static void createSearchTriggers(SQLiteDatabase db) {
+        for (String createTrigger : CREATE_SEARCH_TRIGGERS) {
+            db.execSQL(createTrigger);
+        }
+    }
+    
+    /**
+     * Moves the stored balance of every customer with an id above
+     * {@code afterId} into an opening ledger entry and zeroes the snapshot,
+     * so a full replay of the ledger explains every balance.
+     */
+    private static void openAccounts(SQLiteDatabase db, long afterId) {
+        db.execSQL(OPEN_ACCOUNTS_SQL, new Object[]{afterId});
+        db.execSQL(CLEAR_OPENED_BALANCES_SQL, new Object[]{afterId});
     }
     
     private void insertSampleData(SQLiteDatabase db) {
@@ -147,99 +502,359 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                            "5678901234", "6789012345", "7890123456", "8901234567",
                            "9012345678", "0123456789"};
         
+        List<CustomerIds> ids = allocateCustomerIds(db, 10);
         for (int i = 0; i < 10; i++) {
             ContentValues values = new ContentValues();
             values.put(COLUMN_NAME, names[i]);
             values.put(COLUMN_MOBILE, mobiles[i]);
-            values.put(COLUMN_ACCOUNT_NUMBER, "ACC" + String.format("%06d", i + 1));
-            values.put(COLUMN_UNIQUE_KEY, generateUniqueKey());
-            values.put(COLUMN_EMAIL_ID, generateUniqueKey() + "@OnePay.com");
+            values.put(COLUMN_ACCOUNT_NUMBER, ids.get(i).getAccountNumber());
+            values.put(COLUMN_UNIQUE_KEY, ids.get(i).getUniqueKey());
+            values.put(COLUMN_EMAIL_ID, ids.get(i).getEmailId());
             values.put(COLUMN_BALANCE, 1000.0 + (i * 500)); // Starting balance
-            values.put(COLUMN_UNIQUE_10_DIGIT, generateUnique10Digit());
+            values.put(COLUMN_UNIQUE_10_DIGIT, ids.get(i).getUnique10Digit());
             
             db.insert(TABLE_CUSTOMERS, null, values);
         }
     }
     
-    private String generateUniqueKey() {
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        StringBuilder result = new StringBuilder();
-        Random random = new Random();
-        
-        for (int i = 0; i < 7; i++) {
-            result.append(chars.charAt(random.nextInt(chars.length())));
+    /**
+     * Registers many customers in one database transaction through one
+     * reused statement. Identifiers come from a block of the customer
+     * sequence reserved in the same transaction, so no insert is ever
+     * retried and a rollback hands the block back. Opening balances become
+     * ledger entries as in {@link #seedSyntheticData}, the search index
+     * takes the batch in one statement instead of a trigger per row, and a
+     * loaded recipient index is extended in place rather than rebuilt.
+     *
+     * Fails as a whole, changing nothing, if a mobile is already registered
+     * or appears twice in the batch.
+     *
+     * @return the new customers in request order, with ids and identifiers set
+     */
+    public List<Customer> registerCustomers(List<CustomerRegistration> registrations) {
+        long started = REGISTER_TIMER.start();
+        List<Customer> customers = new ArrayList<>(registrations.size());
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_SEARCH_INSERT);
+            long lastCustomerId = longForQuery(db, MAX_CUSTOMER_ID_SQL);
+            List<CustomerIds> ids = allocateCustomerIds(db, registrations.size());
+            SQLiteStatement insert = db.compileStatement(INSERT_CUSTOMER_SQL);
+            try {
+                for (int i = 0; i < registrations.size(); i++) {
+                    CustomerRegistration registration = registrations.get(i);
+                    CustomerIds customerIds = ids.get(i);
+                    insert.bindString(1, registration.getName());
+                    insert.bindString(2, registration.getMobile());
+                    insert.bindString(3, customerIds.getAccountNumber());
+                    insert.bindString(4, customerIds.getUniqueKey());
+                    insert.bindString(5, customerIds.getEmailId());
+                    insert.bindDouble(6, registration.getOpeningBalance());
+                    insert.bindString(7, customerIds.getUnique10Digit());
+                    
+                    Customer customer = new Customer();
+                    customer.setId((int) insert.executeInsert());
+                    customer.setName(registration.getName());
+                    customer.setMobile(registration.getMobile());
+                    customer.setAccountNumber(customerIds.getAccountNumber());
+                    customer.setUniqueKey(customerIds.getUniqueKey());
+                    customer.setEmailId(customerIds.getEmailId());
+                    customer.setBalance(registration.getOpeningBalance());
+                    customer.setUnique10Digit(customerIds.getUnique10Digit());
+                    customers.add(customer);
+                }
+            } finally {
+                insert.close();
+            }
+            
+            openAccounts(db, lastCustomerId);
+            db.execSQL(INDEX_NEW_CUSTOMERS_SQL, new Object[]{lastCustomerId});
+            db.execSQL(CREATE_SEARCH_INSERT_TRIGGER);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            REGISTER_TIMER.stop(started, customers.size());
+        }
+        synchronized (this) {
+            // An index built since the commit already holds these customers
+            if (recipientIndex != null && !customers.isEmpty() 
+                    && customers.get(0).getId() > recipientIndexedThroughId) {
+                recipientIndex.addAll(customers);
+                recipientIndexedThroughId = customers.get(customers.size() - 1).getId();
+            }
         }
-        return result.toString();
+        return customers;
     }
     
-    private String generateUnique10Digit() {
-        Random random = new Random();
-        long number = 1000000000L + (long)(random.nextDouble() * 9000000000L);
-        return String.valueOf(number);
+    /**
+     * Reserves {@code count} numbers of the customer sequence and derives
+     * their identifiers. Sequence numbers whose unique 10-digit number is
+     * already held by a customer from before schema v8, or by synthetic
+     * data, are skipped and replaced from the next block; nothing derived
+     * from the sequence can collide otherwise. Call inside a transaction.
+     */
+    private static List<CustomerIds> allocateCustomerIds(SQLiteDatabase db, int count) {
+        List<CustomerIds> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int wanted = count - ids.size();
+            long first = longForQuery(db, NEXT_SEQUENCE_VALUE_SQL, SEQUENCE_CUSTOMERS);
+            db.execSQL(RESERVE_SEQUENCE_SQL, new Object[]{wanted, SEQUENCE_CUSTOMERS});
+            
+            for (int start = 0; start < wanted; start += MAX_BIND_ARGS) {
+                String[] unique10Digits = new String[Math.min(MAX_BIND_ARGS, wanted - start)];
+                CustomerIds[] block = new CustomerIds[unique10Digits.length];
+                for (int i = 0; i < block.length; i++) {
+                    block[i] = CustomerIds.forSequence(first + start + i);
+                    unique10Digits[i] = block[i].getUnique10Digit();
+                }
+                Set<String> taken = new HashSet<>();
+                Cursor cursor = db.rawQuery(takenUnique10DigitsSql(block.length), unique10Digits);
+                while (cursor != null && cursor.moveToNext()) {
+                    taken.add(cursor.getString(0));
+                }
+                if (cursor != null) cursor.close();
+                for (CustomerIds customerIds : block) {
+                    if (!taken.contains(customerIds.getUnique10Digit())) {
+                        ids.add(customerIds);
+                    }
+                }
+            }
+        }
+        return ids;
     }
     
-    public Customer getCustomerByMobile(String mobile) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_CUSTOMERS, null, 
-                COLUMN_MOBILE + "=?", new String[]{mobile}, 
-                null, null, null);
-        
-        if (cursor != null && cursor.moveToFirst()) {
-            Customer customer = new Customer();
-            customer.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-            customer.setName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)));
-            customer.setMobile(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MOBILE)));
-            customer.setAccountNumber(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ACCOUNT_NUMBER)));
-            customer.setUniqueKey(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_KEY)));
-            customer.setEmailId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_EMAIL_ID)));
-            customer.setBalance(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_BALANCE)));
-            customer.setUnique10Digit(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_10_DIGIT)));
+    /**
+     * Bulk-loads a synthetic ledger for load tests. Everything goes in one
+     * transaction through reused statements, and the history indexes are
+     * dropped first and rebuilt once at the end, which is much cheaper than
+     * maintaining them row by row. Opening balances are moved into the ledger
+     * with one INSERT ... SELECT after the customers are in, and activity
+     * summaries and the customer search index are rebuilt in one pass each
+     * instead of by the per-row triggers.
+     */
+    public void seedSyntheticData(LedgerSeeder seeder) {
+        long started = SEED_TIMER.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_TRANS_FROM);
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_TRANS_TO);
+            db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_SUMMARIES);
+            db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_OUTBOX);
+            for (String trigger : SEARCH_TRIGGERS) {
+                db.execSQL("DROP TRIGGER IF EXISTS " + trigger);
+            }
+            long lastCustomerId = longForQuery(db, MAX_CUSTOMER_ID_SQL);
             
-            cursor.close();
+            SQLiteStatement identifierTaken = db.compileStatement(IDENTIFIER_TAKEN_SQL);
+            SQLiteStatement insertCustomer = db.compileStatement(INSERT_CUSTOMER_SQL);
+            SQLiteStatement insertTransaction = db.compileStatement(INSERT_SEEDED_TRANSACTION_SQL);
+            try {
+                seeder.generate(lastCustomerId, new LedgerSeeder.RowSink() {
+                    @Override
+                    public boolean isTaken(String identifier) {
+                        identifierTaken.bindString(1, identifier);
+                        identifierTaken.bindString(2, identifier);
+                        identifierTaken.bindString(3, identifier);
+                        return identifierTaken.simpleQueryForLong() > 0;
+                    }
+                    
+                    @Override
+                    public void customer(String name, String mobile, String accountNumber, String uniqueKey,
+                                         String emailId, double balance, String unique10Digit) {
+                        insertCustomer.bindString(1, name);
+                        insertCustomer.bindString(2, mobile);
+                        insertCustomer.bindString(3, accountNumber);
+                        insertCustomer.bindString(4, uniqueKey);
+                        insertCustomer.bindString(5, emailId);
+                        insertCustomer.bindDouble(6, balance);
+                        insertCustomer.bindString(7, unique10Digit);
+                        insertCustomer.executeInsert();
+                    }
+                    
+                    @Override
+                    public void transaction(String fromMobile, String toMobile, double amount, 
+                                            String timestamp, String status) {
+                        insertTransaction.bindString(1, fromMobile);
+                        insertTransaction.bindString(2, toMobile);
+                        insertTransaction.bindDouble(3, amount);
+                        insertTransaction.bindString(4, timestamp);
+                        insertTransaction.bindString(5, status);
+                        insertTransaction.executeInsert();
+                    }
+                });
+            } finally {
+                identifierTaken.close();
+                insertCustomer.close();
+                insertTransaction.close();
+            }
+            
+            openAccounts(db, lastCustomerId);
+            createTransactionIndexes(db);
+            db.execSQL("DELETE FROM " + TABLE_SUMMARIES);
+            db.execSQL(REBUILD_SUMMARIES_SQL);
+            db.execSQL(CREATE_SUMMARIES_TRIGGER);
+            db.execSQL(REBUILD_SEARCH_SQL);
+            createSearchTriggers(db);
+            db.execSQL(CREATE_OUTBOX_TRIGGER);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            customerCache.clear();
+            // Rebuilding once is cheaper than adding a bulk load row by row
+            synchronized (this) {
+                recipientIndex = null;
+            }
+        }
+        changeTracker.publishAll(ChangeTracker.BALANCE | ChangeTracker.HISTORY);
+        SEED_TIMER.stop(started, 0);
+    }
+    
+    @Override
+    public Customer getCustomerByMobile(String mobile) {
+        long started = CUSTOMER_BY_MOBILE_TIMER.start();
+        Customer cached = customerCache.getByMobile(mobile);
+        Customer customer = cached != null ? cached : queryCustomer(CUSTOMER_BY_MOBILE_SQL, mobile);
+        recordCustomerLookup(CUSTOMER_BY_MOBILE_TIMER, started, cached, customer, CUSTOMER_BY_MOBILE_SQL);
+        return customer;
+    }
+    
+    @Override
+    public Customer getCustomerByEmailId(String emailId) {
+        long started = CUSTOMER_BY_EMAIL_TIMER.start();
+        Customer cached = customerCache.getByEmailId(emailId);
+        Customer customer = cached != null ? cached : queryCustomer(CUSTOMER_BY_EMAIL_SQL, emailId);
+        recordCustomerLookup(CUSTOMER_BY_EMAIL_TIMER, started, cached, customer, CUSTOMER_BY_EMAIL_SQL);
+        return customer;
+    }
+    
+    public Customer getCustomerByUnique10Digit(String unique10Digit) {
+        long started = CUSTOMER_BY_UNIQUE_10_DIGIT_TIMER.start();
+        Customer cached = customerCache.getByUnique10Digit(unique10Digit);
+        Customer customer = cached != null ? cached : queryCustomer(CUSTOMER_BY_UNIQUE_10_DIGIT_SQL, unique10Digit);
+        recordCustomerLookup(CUSTOMER_BY_UNIQUE_10_DIGIT_TIMER, started, cached, customer, 
+                CUSTOMER_BY_UNIQUE_10_DIGIT_SQL);
+        return customer;
+    }
+    
+    private static void recordCustomerLookup(DbMetrics.Timer timer, long started, Customer cached, 
+                                             Customer customer, String sql) {
+        if (started == 0) {
+            return;
+        }
+        (cached != null ? CACHE_HITS : CACHE_MISSES).increment();
+        timer.stop(started, customer != null ? 1 : 0, cached != null ? null : sql, "[TEXT]");
+    }
+    
+    /**
+     * Finds the customer a scanned QR code belongs to with one lookup on the
+     * unique_10_digit index. The mobile and account number from the code must
+     * match too, so a tampered or stale code resolves to nobody.
+     */
+    public Customer resolveQrPayee(QrPayload payload) {
+        Customer customer = getCustomerByUnique10Digit(payload.getUnique10Digit());
+        if (customer != null && payload.getMobile().equals(customer.getMobile())
+                && payload.getAccountNumber().equals(customer.getAccountNumber())) {
             return customer;
         }
-        
-        if (cursor != null) cursor.close();
         return null;
     }
     
-    public Customer getCustomerByEmailId(String emailId) {
+    /**
+     * Returns the recipient prefix index, loading it from the customers table
+     * on first use. Call off the main thread.
+     */
+    public synchronized RecipientIndex getRecipientIndex() {
+        if (recipientIndex == null) {
+            long started = RECIPIENT_INDEX_TIMER.start();
+            RecipientIndex index = new RecipientIndex();
+            index.beginBulkLoad();
+            SQLiteDatabase db = this.getReadableDatabase();
+            Cursor cursor = db.query(TABLE_CUSTOMERS, 
+                    new String[]{COLUMN_ID, COLUMN_NAME, COLUMN_MOBILE, COLUMN_EMAIL_ID}, 
+                    null, null, null, null, null);
+            int maxId = 0;
+            if (cursor != null && cursor.moveToFirst()) {
+                CustomerRowMapper mapper = new CustomerRowMapper(cursor);
+                do {
+                    Customer customer = mapper.map(cursor);
+                    index.add(customer.getId(), customer.getName(), customer.getMobile(), customer.getEmailId());
+                    maxId = Math.max(maxId, customer.getId());
+                } while (cursor.moveToNext());
+            }
+            if (cursor != null) cursor.close();
+            index.compact();
+            recipientIndex = index;
+            recipientIndexedThroughId = maxId;
+            RECIPIENT_INDEX_TIMER.stop(started, index.size());
+        }
+        return recipientIndex;
+    }
+    
+    public CustomerCache getCustomerCache() {
+        return customerCache;
+    }
+    
+    private Customer queryCustomer(String sql, String value) {
+        // Taken before reading so a row that changes mid-query is not cached
+        long cacheVersion = customerCache.version();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_CUSTOMERS, null, 
-                COLUMN_EMAIL_ID + "=?", new String[]{emailId}, 
-                null, null, null);
+        Cursor cursor = db.rawQuery(sql, new String[]{value});
         
+        Customer customer = null;
         if (cursor != null && cursor.moveToFirst()) {
-            Customer customer = new Customer();
-            customer.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-            customer.setName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)));
-            customer.setMobile(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MOBILE)));
-            customer.setAccountNumber(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ACCOUNT_NUMBER)));
-            customer.setUniqueKey(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_KEY)));
-            customer.setEmailId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_EMAIL_ID)));
-            customer.setBalance(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_BALANCE)));
-            customer.setUnique10Digit(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_10_DIGIT)));
-            
-            cursor.close();
-            return customer;
+            customer = new CustomerRowMapper(cursor).map(cursor);
+            customerCache.put(customer, cacheVersion);
         }
         
         if (cursor != null) cursor.close();
-        return null;
+        return customer;
     }
     
+    /**
+     * Sets a balance by appending an adjustment entry for the difference;
+     * the customer row itself is not touched.
+     */
+    @Override
     public boolean updateBalance(String mobile, double newBalance) {
+        long started = UPDATE_BALANCE_TIMER.start();
+        boolean updated = appendBalanceAdjustment(mobile, newBalance);
+        if (updated) {
+            changeTracker.publish(mobile, ChangeTracker.BALANCE);
+        }
+        UPDATE_BALANCE_TIMER.stop(started, updated ? 1 : 0, INSERT_LEDGER_ENTRY_SQL, "[TEXT, NULL, REAL]");
+        return updated;
+    }
+    
+    private boolean appendBalanceAdjustment(String mobile, double newBalance) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_BALANCE, newBalance);
-        
-        int result = db.update(TABLE_CUSTOMERS, values, 
-                COLUMN_MOBILE + "=?", new String[]{mobile});
-        return result > 0;
+        db.beginTransaction();
+        try {
+            Double current = readLiveBalance(db, mobile);
+            if (current == null) {
+                return false;
+            }
+            if (newBalance != current) {
+                SQLiteStatement entry = db.compileStatement(INSERT_LEDGER_ENTRY_SQL);
+                try {
+                    appendEntry(entry, mobile, 0, newBalance - current);
+                } finally {
+                    entry.close();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        customerCache.updateBalance(mobile, newBalance);
+        return true;
     }
     
+    @Override
     public long addTransaction(String fromCustomer, String toCustomer, 
                              double amount, String status) {
+        long started = ADD_TRANSACTION_TIMER.start();
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COLUMN_FROM_CUSTOMER, fromCustomer);
@@ -247,177 +862,4533 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_AMOUNT, amount);
         values.put(COLUMN_STATUS, status);
         
-        return db.insert(TABLE_TRANSACTIONS, null, values);
+        long transactionId = db.insert(TABLE_TRANSACTIONS, null, values);
+        if (transactionId != -1) {
+            changeTracker.publish(fromCustomer, ChangeTracker.HISTORY);
+            changeTracker.publish(toCustomer, ChangeTracker.HISTORY);
+        }
+        ADD_TRANSACTION_TIMER.stop(started, transactionId != -1 ? 1 : 0, 
+                INSERT_TRANSACTION_SQL, "[TEXT, TEXT, REAL, TEXT]");
+        return transactionId;
     }
     
-    public List<Transaction> getTransactionHistory(String customerMobile) {
-        List<Transaction> transactions = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        
-        Cursor cursor = db.query(TABLE_TRANSACTIONS, null, 
-                COLUMN_FROM_CUSTOMER + "=? OR " + COLUMN_TO_CUSTOMER + "=?", 
-                new String[]{customerMobile, customerMobile}, 
-                null, null, COLUMN_TIMESTAMP + " DESC");
+    /**
+     * Moves money between two customers as a single database transaction.
+     * Records the transfer and appends a debit and a credit entry to the
+     * ledger; neither customer row is updated, so busy accounts do not
+     * contend on their balance.
+     *
+     * @return the id of the recorded transaction, or -1 if nothing was changed
+     */
+    @Override
+    public long transfer(String fromMobile, String toMobile, double amount) {
+        long started = TRANSFER_TIMER.start();
+        long transactionId = appendTransfer(fromMobile, toMobile, amount);
+        if (transactionId != -1) {
+            publishTransfer(fromMobile, toMobile);
+        }
+        if (started != 0) {
+            if (transactionId == -1) {
+                REJECTED_TRANSFERS.increment();
+            }
+            TRANSFER_TIMER.stop(started, transactionId != -1 ? 1 : 0);
+        }
+        return transactionId;
+    }
+    
+    private static void publishTransfer(String fromMobile, String toMobile) {
+        changeTracker.publish(fromMobile, ChangeTracker.BALANCE | ChangeTracker.HISTORY);
+        changeTracker.publish(toMobile, ChangeTracker.BALANCE | ChangeTracker.HISTORY);
+    }
+    
+    private long appendTransfer(String fromMobile, String toMobile, double amount) {
+        if (amount <= 0 || fromMobile.equals(toMobile)) {
+            return -1;
+        }
         
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                Transaction transaction = new Transaction();
-                transaction.setTransactionId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_TRANS_ID)));
-                transaction.setFromCustomer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FROM_CUSTOMER)));
-                transaction.setToCustomer(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TO_CUSTOMER)));
-                transaction.setAmount(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_AMOUNT)));
-                transaction.setTimestamp(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-                transaction.setStatus(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_STATUS)));
-                
-                transactions.add(transaction);
-            } while (cursor.moveToNext());
+        SQLiteDatabase db = this.getWritableDatabase();
+        // Exclusive, so the balance read below cannot go stale before the debit is appended
+        db.beginTransaction();
+        try {
+            Double senderBalance = readLiveBalance(db, fromMobile);
+            if (senderBalance == null || senderBalance < amount 
+                    || longForQuery(db, CUSTOMER_EXISTS_SQL, toMobile) == 0) {
+                return -1;
+            }
             
-            cursor.close();
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_FROM_CUSTOMER, fromMobile);
+            values.put(COLUMN_TO_CUSTOMER, toMobile);
+            values.put(COLUMN_AMOUNT, amount);
+            values.put(COLUMN_STATUS, "SUCCESS");
+            long transactionId = db.insert(TABLE_TRANSACTIONS, null, values);
+            if (transactionId == -1) {
+                return -1;
+            }
+            
+            SQLiteStatement entry = db.compileStatement(INSERT_LEDGER_ENTRY_SQL);
+            try {
+                appendEntry(entry, fromMobile, transactionId, -amount);
+                appendEntry(entry, toMobile, transactionId, amount);
+            } finally {
+                entry.close();
+            }
+            
+            db.setTransactionSuccessful();
+            return transactionId;
+        } finally {
+            db.endTransaction();
+            customerCache.invalidate(fromMobile);
+            customerCache.invalidate(toMobile);
         }
-        
-        return transactions;
     }
     
-    public List<Customer> getAllCustomers() {
-        List<Customer> customers = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        
-        Cursor cursor = db.query(TABLE_CUSTOMERS, null, null, null, null, null, null);
+    /**
+     * Runs many transfers in one database transaction, reusing compiled
+     * statements for every item. Each source account's balance is read once
+     * and checked against the total of its valid items; if it cannot cover
+     * that total, all of its items fail and nothing is taken from it. Checks
+     * use balances from before any credit in the same batch is applied.
+     *
+     * @return per request, the id of the recorded transaction or -1 if it failed
+     */
+    @Override
+    public long[] bulkTransfer(List<TransferRequest> requests) {
+        long started = BULK_TRANSFER_TIMER.start();
+        long[] results = new long[requests.size()];
+        Arrays.fill(results, -1);
         
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                Customer customer = new Customer();
-                customer.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                customer.setName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)));
-                customer.setMobile(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MOBILE)));
-                customer.setAccountNumber(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ACCOUNT_NUMBER)));
-                customer.setUniqueKey(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_KEY)));
-                customer.setEmailId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_EMAIL_ID)));
-                customer.setBalance(cursor.getDouble(cursor.getColumnIndexOrThrow(COLUMN_BALANCE)));
-                customer.setUnique10Digit(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_10_DIGIT)));
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement exists = db.compileStatement(CUSTOMER_EXISTS_SQL);
+            SQLiteStatement entry = db.compileStatement(INSERT_LEDGER_ENTRY_SQL);
+            SQLiteStatement insert = db.compileStatement(INSERT_TRANSACTION_SQL);
+            try {
+                insert.bindString(4, "SUCCESS");
                 
-                customers.add(customer);
-            } while (cursor.moveToNext());
-            
-            cursor.close();
+                // Validate every item and total what each source owes
+                boolean[] valid = new boolean[requests.size()];
+                Map<String, Double> totalBySource = new HashMap<>();
+                Map<String, Boolean> recipientExists = new HashMap<>();
+                for (int i = 0; i < requests.size(); i++) {
+                    TransferRequest request = requests.get(i);
+                    if (request.getAmount() <= 0 || request.getFromMobile().equals(request.getToMobile())) {
+                        continue;
+                    }
+                    Boolean known = recipientExists.get(request.getToMobile());
+                    if (known == null) {
+                        exists.bindString(1, request.getToMobile());
+                        known = exists.simpleQueryForLong() > 0;
+                        recipientExists.put(request.getToMobile(), known);
+                    }
+                    if (!known) {
+                        continue;
+                    }
+                    valid[i] = true;
+                    Double total = totalBySource.get(request.getFromMobile());
+                    totalBySource.put(request.getFromMobile(), 
+                            (total != null ? total : 0.0) + request.getAmount());
+                }
+                
+                // One balance check per source account
+                Set<String> fundedSources = new HashSet<>();
+                for (Map.Entry<String, Double> total : totalBySource.entrySet()) {
+                    Double balance = readLiveBalance(db, total.getKey());
+                    if (balance != null && balance >= total.getValue()) {
+                        fundedSources.add(total.getKey());
+                    }
+                }
+                
+                for (int i = 0; i < requests.size(); i++) {
+                    TransferRequest request = requests.get(i);
+                    if (!valid[i] || !fundedSources.contains(request.getFromMobile())) {
+                        continue;
+                    }
+                    insert.bindString(1, request.getFromMobile());
+                    insert.bindString(2, request.getToMobile());
+                    insert.bindDouble(3, request.getAmount());
+                    results[i] = insert.executeInsert();
+                    appendEntry(entry, request.getFromMobile(), results[i], -request.getAmount());
+                    appendEntry(entry, request.getToMobile(), results[i], request.getAmount());
+                }
+            } finally {
+                exists.close();
+                entry.close();
+                insert.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            // Too many accounts may have changed to invalidate one by one
+            customerCache.clear();
         }
-        
-        return customers;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != -1) {
+                publishTransfer(requests.get(i).getFromMobile(), requests.get(i).getToMobile());
+            }
+        }
+        if (started != 0) {
+            int failed = 0;
+            for (long result : results) {
+                if (result == -1) {
+                    failed++;
+                }
+            }
+            FAILED_BULK_ITEMS.add(failed);
+            BULK_TRANSFER_TIMER.stop(started, results.length - failed);
+        }
+        return results;
     }
-}
-
-// Customer.java
-package com.OnePay.paymentapp;
-
-public class Customer {
-    private int id;
-    private String name;
-    private String mobile;
-    private String accountNumber;
-    private String uniqueKey;
-    private String emailId;
-    private double balance;
-    private String unique10Digit;
-    
-    // Constructors
-    public Customer() {}
     
-    public Customer(String name, String mobile, String accountNumber, 
-                   String uniqueKey, String emailId, double balance, String unique10Digit) {
-        this.name = name;
-        this.mobile = mobile;
-        this.accountNumber = accountNumber;
-        this.uniqueKey = uniqueKey;
-        this.emailId = emailId;
-        this.balance = balance;
-        this.unique10Digit = unique10Digit;
+    @Override
+    public List<OutboxEntry> claimOutboxBatch(long now, long leaseMillis, int limit) {
+        List<OutboxEntry> batch = new ArrayList<>();
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Cursor cursor = db.rawQuery(outboxBatchSql(limit), new String[]{String.valueOf(now)});
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    batch.add(new OutboxEntry(cursor.getLong(0), cursor.getString(1), cursor.getString(2), 
+                            cursor.getDouble(3), cursor.getString(4), cursor.getInt(5)));
+                } while (cursor.moveToNext());
+            }
+            if (cursor != null) cursor.close();
+            stampOutbox(db, LEASE_OUTBOX_SQL, batch, now + leaseMillis);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return batch;
+    }
+    
+    @Override
+    public void acknowledgeOutbox(List<OutboxEntry> entries) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement delete = db.compileStatement(DELETE_OUTBOX_SQL);
+            try {
+                for (OutboxEntry entry : entries) {
+                    delete.bindLong(1, entry.getTransactionId());
+                    delete.executeUpdateDelete();
+                }
+            } finally {
+                delete.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    @Override
+    public void retryOutbox(List<OutboxEntry> entries, long nextAttemptAt) {
+        updateOutbox(RETRY_OUTBOX_SQL, entries, nextAttemptAt);
+    }
+    
+    @Override
+    public void rejectOutbox(List<OutboxEntry> entries) {
+        updateOutbox(REJECT_OUTBOX_SQL, entries, System.currentTimeMillis());
+    }
+    
+    @Override
+    public long nextOutboxAttemptAt() {
+        return longForQuery(this.getReadableDatabase(), NEXT_OUTBOX_ATTEMPT_SQL);
+    }
+    
+    private void updateOutbox(String sql, List<OutboxEntry> entries, long time) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            stampOutbox(db, sql, entries, time);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /** Runs a (time, transaction id) statement for every entry. */
+    private static void stampOutbox(SQLiteDatabase db, String sql, List<OutboxEntry> entries, long time) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            for (OutboxEntry entry : entries) {
+                statement.bindLong(1, time);
+                statement.bindLong(2, entry.getTransactionId());
+                statement.executeUpdateDelete();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+    
+    /**
+     * Folds the ledger entries appended since the last run into the snapshot
+     * of every account they touch, so balance reads only sum a short tail.
+     * Balances do not change. Meant for the background write thread.
+     *
+     * @return the number of account snapshots advanced
+     */
+    public synchronized int compactLedger() {
+        long started = COMPACT_TIMER.start();
+        int advanced = foldLedgerIntoSnapshots();
+        COMPACT_TIMER.stop(started, advanced, COMPACT_LEDGER_SQL, "[INTEGER, INTEGER, INTEGER, INTEGER]");
+        return advanced;
+    }
+    
+    private int foldLedgerIntoSnapshots() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (snapshotWatermark < 0) {
+                snapshotWatermark = longForQuery(db, SNAPSHOT_WATERMARK_SQL);
+            }
+            long upTo = longForQuery(db, MAX_ENTRY_ID_SQL);
+            if (upTo <= snapshotWatermark) {
+                return 0;
+            }
+            
+            SQLiteStatement compact = db.compileStatement(COMPACT_LEDGER_SQL);
+            int advanced;
+            try {
+                compact.bindLong(1, upTo);
+                compact.bindLong(2, upTo);
+                compact.bindLong(3, snapshotWatermark);
+                compact.bindLong(4, upTo);
+                advanced = compact.executeUpdateDelete();
+            } finally {
+                compact.close();
+            }
+            
+            db.setTransactionSuccessful();
+            snapshotWatermark = upTo;
+            return advanced;
+        } finally {
+            db.endTransaction();
+        }
+    }
+    
+    /**
+     * Rebuilds every balance by replaying the whole ledger and compares it
+     * with snapshot plus tail, then checks that each transfer's entries
+     * cancel out. Reads the full ledger, so run it rarely and off the main
+     * thread.
+     *
+     * @return one line per problem found; empty when the ledger is consistent
+     */
+    public List<String> verifyLedger() {
+        long started = VERIFY_TIMER.start();
+        List<String> problems = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        Cursor cursor = db.rawQuery(VERIFY_BALANCES_SQL, null);
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                problems.add("Account " + cursor.getString(0) + ": balance " + cursor.getDouble(1) 
+                        + ", ledger replay " + cursor.getDouble(2));
+            } while (cursor.moveToNext());
+        }
+        if (cursor != null) cursor.close();
+        
+        cursor = db.rawQuery(VERIFY_TRANSFERS_SQL, null);
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                problems.add("Transaction " + cursor.getLong(0) + ": entries sum to " + cursor.getDouble(1));
+            } while (cursor.moveToNext());
+        }
+        if (cursor != null) cursor.close();
+        VERIFY_TIMER.stop(started, problems.size());
+        return problems;
+    }
+    
+    /**
+     * Sent and received totals per day or per month for one customer, oldest
+     * first. Buckets without activity are left out. Costs one summary row
+     * per bucket, however many transactions fall into it.
+     *
+     * @param period     {@code "day"} or {@code "month"}
+     * @param fromBucket first bucket, inclusive, e.g. "2024-05-01" or "2024-05"
+     * @param toBucket   last bucket, inclusive
+     */
+    public List<ActivitySummary> getActivitySummaries(String mobile, String period, 
+                                                      String fromBucket, String toBucket) {
+        long started = SUMMARIES_TIMER.start();
+        List<ActivitySummary> summaries = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        String[] args = {mobile, period, fromBucket, toBucket};
+        Cursor cursor = db.rawQuery(SUMMARY_RANGE_SQL, args);
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                summaries.add(new ActivitySummary(cursor.getString(0), cursor.getDouble(1), cursor.getInt(2),
+                        cursor.getDouble(3), cursor.getInt(4)));
+            } while (cursor.moveToNext());
+        }
+        if (cursor != null) cursor.close();
+        SUMMARIES_TIMER.stop(started, summaries.size(), SUMMARY_RANGE_SQL, args);
+        return summaries;
+    }
+    
+    /** Totals for the current calendar month, in UTC like the stored timestamps. */
+    public ActivitySummary getCurrentMonthSummary(String mobile) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String month = format.format(new Date());
+        
+        List<ActivitySummary> summaries = getActivitySummaries(mobile, PERIOD_MONTH, month, month);
+        return summaries.isEmpty() ? new ActivitySummary(month, 0, 0, 0, 0) : summaries.get(0);
+    }
+    
+    public void addChatMessage(String mobile, ChatEntry entry) {
+        long started = ADD_CHAT_TIMER.start();
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement(INSERT_CHAT_MESSAGE_SQL);
+        try {
+            insert.bindString(1, mobile);
+            insert.bindLong(2, entry.getSeq());
+            insert.bindLong(3, entry.isFromUser() ? 1 : 0);
+            insert.bindString(4, entry.getMessage());
+            // Throws on a (mobile, seq) conflict; the statement still has to be closed
+            insert.executeInsert();
+        } finally {
+            insert.close();
+        }
+        ADD_CHAT_TIMER.stop(started, 1, INSERT_CHAT_MESSAGE_SQL, "[TEXT, INTEGER, INTEGER, TEXT]");
+    }
+    
+    /**
+     * Up to {@code limit} chat messages directly before ({@code newer} false)
+     * or after {@code anchorSeq}, oldest first.
+     */
+    public List<ChatEntry> getChatMessages(String mobile, long anchorSeq, boolean newer, int limit) {
+        long started = CHAT_PAGE_TIMER.start();
+        List<ChatEntry> messages = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        String sql = chatPageSql(newer, limit);
+        String[] args = {mobile, String.valueOf(anchorSeq)};
+        Cursor cursor = db.rawQuery(sql, args);
+        if (cursor != null && cursor.moveToFirst()) {
+            do {
+                messages.add(new ChatEntry(cursor.getLong(0), cursor.getString(2), cursor.getInt(1) != 0));
+            } while (cursor.moveToNext());
+        }
+        if (cursor != null) cursor.close();
+        
+        if (!newer) {
+            Collections.reverse(messages);
+        }
+        CHAT_PAGE_TIMER.stop(started, messages.size(), sql, args);
+        return messages;
+    }
+    
+    private static Double readLiveBalance(SQLiteDatabase db, String mobile) {
+        Cursor cursor = db.rawQuery(LIVE_BALANCE_SQL, new String[]{mobile});
+        Double balance = null;
+        if (cursor != null && cursor.moveToFirst()) {
+            balance = cursor.getDouble(0);
+        }
+        if (cursor != null) cursor.close();
+        return balance;
+    }
+    
+    private static long longForQuery(SQLiteDatabase db, String sql, String... args) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            for (int i = 0; i < args.length; i++) {
+                statement.bindString(i + 1, args[i]);
+            }
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+    
+    /** Appends one signed entry; a transactionId of 0 or less records none. */
+    private static void appendEntry(SQLiteStatement insert, String account, long transactionId, double amount) {
+        insert.bindString(1, account);
+        if (transactionId > 0) {
+            insert.bindLong(2, transactionId);
+        } else {
+            insert.bindNull(2);
+        }
+        insert.bindDouble(3, amount);
+        insert.executeInsert();
+    }
+    
+    @Override
+    public List<Transaction> getTransactionHistory(String customerMobile) {
+        long started = HISTORY_TIMER.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        String[] args = {customerMobile, customerMobile, customerMobile};
+        Cursor cursor = db.rawQuery(HISTORY_SQL, args);
+        
+        List<Transaction> transactions = readTransactions(cursor);
+        HISTORY_TIMER.stop(started, transactions.size(), HISTORY_SQL, args);
+        return transactions;
+    }
+    
+    /**
+     * Returns up to {@code limit} transactions older than {@code olderThan},
+     * newest first. Pass null to get the first page.
+     */
+    @Override
+    public List<Transaction> getTransactionHistoryPage(String customerMobile, 
+                                                      Transaction olderThan, int limit) {
+        return queryTransactionHistoryPage(customerMobile, olderThan, false, limit);
+    }
+    
+    /**
+     * Returns up to {@code limit} transactions directly newer than
+     * {@code newerThan}, newest first.
+     */
+    public List<Transaction> getNewerTransactionHistoryPage(String customerMobile, 
+                                                           Transaction newerThan, int limit) {
+        return queryTransactionHistoryPage(customerMobile, newerThan, true, limit);
+    }
+    
+    /**
+     * Returns up to {@code limit} transactions matching {@code search} that
+     * are older than {@code olderThan}, newest first. Pass null to get the
+     * first page.
+     */
+    @Override
+    public List<Transaction> searchTransactionHistory(TransactionSearch search, Transaction olderThan, int limit) {
+        if (search.matchesNothing()) {
+            return new ArrayList<>();
+        }
+        long started = SEARCH_TIMER.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        List<String> argList = new ArrayList<>();
+        String sql = searchHistorySql(search, olderThan, limit, argList);
+        String[] args = argList.toArray(new String[0]);
+        Cursor cursor = db.rawQuery(sql, args);
+        
+        List<Transaction> transactions = readTransactions(cursor);
+        SEARCH_TIMER.stop(started, transactions.size(), sql, args);
+        return transactions;
+    }
+    
+    private List<Transaction> queryTransactionHistoryPage(String customerMobile, Transaction anchor, 
+                                                         boolean newer, int limit) {
+        long started = HISTORY_PAGE_TIMER.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        String sql = historyPageSql(anchor != null, newer, limit);
+        String[] args = historyPageArgs(customerMobile, anchor);
+        Cursor cursor = db.rawQuery(sql, args);
+        
+        List<Transaction> transactions = readTransactions(cursor);
+        if (newer) {
+            Collections.reverse(transactions);
+        }
+        HISTORY_PAGE_TIMER.stop(started, transactions.size(), sql, args);
+        return transactions;
+    }
+    
+    /**
+     * Reads in keyset chunks rather than through one cursor: a cursor over
+     * the whole range would re-run the query from the top each time it
+     * refills its window. Rows committed during the export with later
+     * timestamps may be included at the end.
+     */
+    @Override
+    public long exportTransactionHistory(String customerMobile, String fromDate, String toDate, 
+                                         HistoryExporter exporter) throws IOException {
+        long started = EXPORT_TIMER.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        try {
+            exporter.setTotalRows(longForQuery(db, EXPORT_COUNT_SQL, 
+                    exportHistoryArgs(customerMobile, fromDate, toDate, null, 0)));
+            String anchorTimestamp = null;
+            long anchorId = 0;
+            int chunkRows;
+            do {
+                Cursor cursor = db.rawQuery(exportHistorySql(anchorTimestamp != null, EXPORT_CHUNK_ROWS), 
+                        exportHistoryArgs(customerMobile, fromDate, toDate, anchorTimestamp, anchorId));
+                chunkRows = 0;
+                try {
+                    // Positions follow HISTORY_COLUMNS
+                    while (cursor.moveToNext()) {
+                        anchorId = cursor.getLong(0);
+                        anchorTimestamp = cursor.getString(4);
+                        exporter.writeRow(anchorId, cursor.getString(1), cursor.getString(2), 
+                                cursor.getDouble(3), anchorTimestamp, cursor.getString(5));
+                        chunkRows++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } while (chunkRows == EXPORT_CHUNK_ROWS);
+            
+            long rows = exporter.finish();
+            EXPORT_TIMER.stop(started, rows);
+            return rows;
+        } finally {
+            exporter.close();
+        }
+    }
+    
+    private List<Transaction> readTransactions(Cursor cursor) {
+        List<Transaction> transactions = new ArrayList<>();
+        
+        if (cursor != null && cursor.moveToFirst()) {
+            TransactionRowMapper mapper = new TransactionRowMapper(cursor);
+            do {
+                transactions.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        
+        if (cursor != null) cursor.close();
+        return transactions;
+    }
+    
+    public List<Customer> getAllCustomers() {
+        long started = ALL_CUSTOMERS_TIMER.start();
+        List<Customer> customers = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        
+        Cursor cursor = db.rawQuery(CUSTOMER_SELECT_SQL, null);
+        
+        if (cursor != null && cursor.moveToFirst()) {
+            CustomerRowMapper mapper = new CustomerRowMapper(cursor);
+            do {
+                customers.add(mapper.map(cursor));
+            } while (cursor.moveToNext());
+        }
+        
+        if (cursor != null) cursor.close();
+        ALL_CUSTOMERS_TIMER.stop(started, customers.size(), CUSTOMER_SELECT_SQL, (String) null);
+        return customers;
+    }
+}
+
+// DbMetrics.java
+package com.OnePay.paymentapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms, row counts, counters and a slow-query log for the
+ * data layer. Off by default: while disabled a timed call costs one
+ * volatile read and nothing is allocated or recorded. Recording is lock
+ * free, so it is safe from every database thread.
+ *
+ * <pre>
+ * long started = TIMER.start();
+ * ... run the query ...
+ * TIMER.stop(started, rows, sql, args);
+ * </pre>
+ */
+public final class DbMetrics {
+    private static final int SLOW_LOG_SIZE = 64;
+    
+    private static volatile boolean enabled;
+    private static volatile long slowQueryThresholdNanos = 50_000_000L;
+    
+    private static final List<Timer> timers = new CopyOnWriteArrayList<>();
+    private static final List<Counter> counters = new CopyOnWriteArrayList<>();
+    private static final AtomicReferenceArray<SlowQuery> slowLog = new AtomicReferenceArray<>(SLOW_LOG_SIZE);
+    private static final AtomicLong slowLogNext = new AtomicLong();
+    
+    private DbMetrics() {}
+    
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+    
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    
+    public static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryThresholdNanos = millis * 1_000_000L;
+    }
+    
+    /** Registers a timer; keep it in a static field rather than calling this per operation. */
+    public static Timer timer(String operation) {
+        Timer timer = new Timer(operation);
+        timers.add(timer);
+        return timer;
+    }
+    
+    public static Counter counter(String name) {
+        Counter counter = new Counter(name);
+        counters.add(counter);
+        return counter;
+    }
+    
+    /** Clears every histogram, counter and the slow-query log. */
+    public static void reset() {
+        for (Timer timer : timers) {
+            timer.reset();
+        }
+        for (Counter counter : counters) {
+            counter.value.set(0);
+        }
+        for (int i = 0; i < SLOW_LOG_SIZE; i++) {
+            slowLog.set(i, null);
+        }
+        slowLogNext.set(0);
+    }
+    
+    /**
+     * Latency histogram for one operation. Buckets are log-linear: eight per
+     * power of two, so a percentile is off by at most 12.5%, and recording
+     * is a few atomic adds with no allocation.
+     */
+    public static final class Timer {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+        
+        private final String operation;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        
+        Timer(String operation) {
+            this.operation = operation;
+        }
+        
+        /** @return a start time to hand to {@link #stop}, or 0 when metrics are off */
+        public long start() {
+            return enabled ? System.nanoTime() : 0;
+        }
+        
+        public void stop(long started, long rowCount) {
+            stop(started, rowCount, null, (String) null);
+        }
+        
+        /** @param args bind arguments; only their types and lengths are logged, never values */
+        public void stop(long started, long rowCount, String sql, Object[] args) {
+            if (started == 0) {
+                return;
+            }
+            long elapsed = record(started, rowCount);
+            if (elapsed >= slowQueryThresholdNanos) {
+                logSlowQuery(operation, elapsed, rowCount, sql, shapeOf(args));
+            }
+        }
+        
+        /** @param argShape fixed bind shape for statements whose arguments are not in an array */
+        public void stop(long started, long rowCount, String sql, String argShape) {
+            if (started == 0) {
+                return;
+            }
+            long elapsed = record(started, rowCount);
+            if (elapsed >= slowQueryThresholdNanos) {
+                logSlowQuery(operation, elapsed, rowCount, sql, argShape);
+            }
+        }
+        
+        private long record(long started, long rowCount) {
+            long elapsed = System.nanoTime() - started;
+            buckets.incrementAndGet(bucketOf(elapsed));
+            count.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            rows.addAndGet(rowCount);
+            long max = maxNanos.get();
+            while (elapsed > max && !maxNanos.compareAndSet(max, elapsed)) {
+                max = maxNanos.get();
+            }
+            return elapsed;
+        }
+        
+        static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0, nanos);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+        
+        static long bucketLowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        }
+        
+        /** Upper edge of the bucket holding the given quantile, capped at the max seen. */
+        long percentileNanos(double quantile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long upper = i + 1 < BUCKETS ? bucketLowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                    return Math.min(upper, maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+        
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            rows.set(0);
+        }
+    }
+    
+    public static final class Counter {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+        
+        Counter(String name) {
+            this.name = name;
+        }
+        
+        public void increment() {
+            add(1);
+        }
+        
+        public void add(long delta) {
+            if (enabled) {
+                value.addAndGet(delta);
+            }
+        }
+    }
+    
+    private static final class SlowQuery {
+        final String operation;
+        final long durationNanos;
+        final long rows;
+        final String sql;
+        final String argShape;
+        final long atMillis = System.currentTimeMillis();
+        
+        SlowQuery(String operation, long durationNanos, long rows, String sql, String argShape) {
+            this.operation = operation;
+            this.durationNanos = durationNanos;
+            this.rows = rows;
+            this.sql = sql;
+            this.argShape = argShape;
+        }
+    }
+    
+    private static void logSlowQuery(String operation, long nanos, long rows, String sql, String argShape) {
+        int slot = (int) (slowLogNext.getAndIncrement() % SLOW_LOG_SIZE);
+        slowLog.set(slot, new SlowQuery(operation, nanos, rows, sql, argShape));
+    }
+    
+    /** Types and string lengths of bind arguments, e.g. "[TEXT(10), INTEGER]". */
+    static String shapeOf(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        StringBuilder shape = new StringBuilder("[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                shape.append(", ");
+            }
+            Object arg = args[i];
+            if (arg == null) {
+                shape.append("NULL");
+            } else if (arg instanceof String) {
+                shape.append("TEXT(").append(((String) arg).length()).append(')');
+            } else if (arg instanceof Double || arg instanceof Float) {
+                shape.append("REAL");
+            } else if (arg instanceof Number) {
+                shape.append("INTEGER");
+            } else {
+                shape.append("BLOB");
+            }
+        }
+        return shape.append(']').toString();
+    }
+    
+    /** Snapshot of everything recorded so far. Times are in microseconds. */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\"enabled\":").append(enabled)
+                .append(",\"slowQueryThresholdUs\":").append(slowQueryThresholdNanos / 1000)
+                .append(",\"operations\":[");
+        boolean first = true;
+        for (Timer timer : timers) {
+            long calls = timer.count.get();
+            if (calls == 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":").append(quote(timer.operation))
+                    .append(",\"count\":").append(calls)
+                    .append(",\"rows\":").append(timer.rows.get())
+                    .append(",\"meanUs\":").append(timer.totalNanos.get() / calls / 1000)
+                    .append(",\"p50Us\":").append(timer.percentileNanos(0.50) / 1000)
+                    .append(",\"p99Us\":").append(timer.percentileNanos(0.99) / 1000)
+                    .append(",\"maxUs\":").append(timer.maxNanos.get() / 1000)
+                    .append('}');
+        }
+        json.append("],\"counters\":{");
+        first = true;
+        for (Counter counter : counters) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(quote(counter.name)).append(':').append(counter.value.get());
+        }
+        json.append("},\"slowQueries\":[");
+        // Oldest first
+        long next = slowLogNext.get();
+        first = true;
+        for (long n = Math.max(0, next - SLOW_LOG_SIZE); n < next; n++) {
+            SlowQuery query = slowLog.get((int) (n % SLOW_LOG_SIZE));
+            if (query == null) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"operation\":").append(quote(query.operation))
+                    .append(",\"durationUs\":").append(query.durationNanos / 1000)
+                    .append(",\"rows\":").append(query.rows)
+                    .append(",\"sql\":").append(quote(query.sql))
+                    .append(",\"args\":").append(quote(query.argShape))
+                    .append(",\"atMillis\":").append(query.atMillis)
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+    
+    /** Writes {@link #toJson()} to a file, e.g. under getFilesDir() for adb pull. */
+    public static void writeJson(File file) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+    
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
+
+// LedgerSchema.java
+package com.OnePay.paymentapp;
+
+import java.util.List;
+
+/**
+ * Tables, indexes and SQL shared by every {@link LedgerStore}, so the
+ * on-device database and the JVM one are built from the same statements.
+ * Plain Java only: this class has to load without the Android framework.
+ */
+public final class LedgerSchema {
+    // Customer table
+    static final String TABLE_CUSTOMERS = "customers";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_NAME = "name";
+    static final String COLUMN_MOBILE = "mobile";
+    static final String COLUMN_ACCOUNT_NUMBER = "account_number";
+    static final String COLUMN_UNIQUE_KEY = "unique_key";
+    static final String COLUMN_EMAIL_ID = "email_id";
+    static final String COLUMN_BALANCE = "balance";
+    static final String COLUMN_UNIQUE_10_DIGIT = "unique_10_digit";
+    // Since schema v3 the balance column is a snapshot: the balance as of
+    // ledger entry snapshot_entry_id. Entries after it are added on read.
+    static final String COLUMN_SNAPSHOT_ENTRY_ID = "snapshot_entry_id";
+    
+    // Transaction table
+    static final String TABLE_TRANSACTIONS = "transactions";
+    static final String COLUMN_TRANS_ID = "transaction_id";
+    static final String COLUMN_FROM_CUSTOMER = "from_customer";
+    static final String COLUMN_TO_CUSTOMER = "to_customer";
+    static final String COLUMN_AMOUNT = "amount";
+    static final String COLUMN_TIMESTAMP = "timestamp";
+    static final String COLUMN_STATUS = "status";
+    
+    // Transaction indexes (schema v2)
+    static final String INDEX_TRANS_FROM = "idx_transactions_from_timestamp";
+    static final String INDEX_TRANS_TO = "idx_transactions_to_timestamp";
+    
+    // Append-only ledger (schema v3). One signed entry per account per
+    // money movement; rows are never updated or deleted.
+    static final String TABLE_LEDGER = "ledger_entries";
+    static final String COLUMN_ENTRY_ID = "entry_id";
+    static final String COLUMN_ACCOUNT = "account";
+    static final String INDEX_LEDGER_ACCOUNT = "idx_ledger_entries_account";
+    
+    // Per-customer activity totals (schema v4), one row per customer, period and bucket
+    static final String TABLE_SUMMARIES = "activity_summaries";
+    static final String COLUMN_PERIOD = "period";
+    static final String COLUMN_BUCKET = "bucket";
+    static final String COLUMN_SENT_TOTAL = "sent_total";
+    static final String COLUMN_SENT_COUNT = "sent_count";
+    static final String COLUMN_RECEIVED_TOTAL = "received_total";
+    static final String COLUMN_RECEIVED_COUNT = "received_count";
+    static final String TRIGGER_SUMMARIES = "trg_transactions_summaries";
+    // Buckets are prefixes of the UTC timestamp: "2024-05-31" and "2024-05"
+    static final String PERIOD_DAY = "day";
+    static final String PERIOD_MONTH = "month";
+    static final int DAY_BUCKET_LENGTH = 10;
+    static final int MONTH_BUCKET_LENGTH = 7;
+    
+    // Chat transcript (schema v5), one conversation per mobile; seq is
+    // assigned by the app and orders messages within a conversation
+    static final String TABLE_CHAT = "chat_messages";
+    static final String COLUMN_SEQ = "seq";
+    static final String COLUMN_FROM_USER = "from_user";
+    static final String COLUMN_MESSAGE = "message";
+    
+    // Full-text index over the customer directory (schema v6), docid =
+    // customer id. History search matches counterparties through it. It is
+    // an external-content table, so the text stays in customers and triggers
+    // keep the index in step with name, mobile and email ID changes. Since
+    // v9 it uses the unicode61 tokenizer, so words in any script are split
+    // and case-folded the way TransactionSearch splits the query.
+    static final String TABLE_SEARCH = "customer_search";
+    static final String TRIGGER_SEARCH_INSERT = "trg_customers_search_insert";
+    static final String TRIGGER_SEARCH_BEFORE_UPDATE = "trg_customers_search_before_update";
+    static final String TRIGGER_SEARCH_AFTER_UPDATE = "trg_customers_search_after_update";
+    static final String TRIGGER_SEARCH_DELETE = "trg_customers_search_delete";
+    static final String[] SEARCH_TRIGGERS = {TRIGGER_SEARCH_INSERT, TRIGGER_SEARCH_BEFORE_UPDATE, 
+            TRIGGER_SEARCH_AFTER_UPDATE, TRIGGER_SEARCH_DELETE};
+    
+    // Outbox of successful transfers still to reach the core ledger (schema
+    // v7). A trigger enqueues each one in the transaction that records it;
+    // rows are deleted once the backend acknowledges them.
+    static final String TABLE_OUTBOX = "outbox";
+    static final String COLUMN_OUTBOX_STATE = "state";
+    static final String COLUMN_ATTEMPTS = "attempts";
+    // Epoch millis; also pushed forward while a batch is being sent, as a lease
+    static final String COLUMN_NEXT_ATTEMPT_AT = "next_attempt_at";
+    static final int OUTBOX_PENDING = 0;
+    // Refused by the backend; kept for support, never sent again
+    static final int OUTBOX_REJECTED = 1;
+    static final String INDEX_OUTBOX_DUE = "idx_outbox_due";
+    static final String TRIGGER_OUTBOX = "trg_transactions_outbox";
+    
+    // Persisted sequences that identifiers are derived from (schema v8)
+    static final String TABLE_SEQUENCES = "id_sequences";
+    static final String COLUMN_SEQUENCE_NAME = "name";
+    static final String COLUMN_NEXT_VALUE = "next_value";
+    static final String SEQUENCE_CUSTOMERS = "customers";
+    // Most binds SQLite accepts in one statement on older Android versions
+    static final int MAX_BIND_ARGS = 999;
+    
+    static final String CREATE_CUSTOMERS_TABLE = "CREATE TABLE " + TABLE_CUSTOMERS + "("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_NAME + " TEXT,"
+            + COLUMN_MOBILE + " TEXT UNIQUE,"
+            + COLUMN_ACCOUNT_NUMBER + " TEXT UNIQUE,"
+            + COLUMN_UNIQUE_KEY + " TEXT UNIQUE,"
+            + COLUMN_EMAIL_ID + " TEXT UNIQUE,"
+            + COLUMN_BALANCE + " REAL,"
+            + COLUMN_UNIQUE_10_DIGIT + " TEXT UNIQUE,"
+            + COLUMN_SNAPSHOT_ENTRY_ID + " INTEGER NOT NULL DEFAULT 0" + ")";
+    
+    static final String CREATE_TRANSACTIONS_TABLE = "CREATE TABLE " + TABLE_TRANSACTIONS + "("
+            + COLUMN_TRANS_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_FROM_CUSTOMER + " TEXT,"
+            + COLUMN_TO_CUSTOMER + " TEXT,"
+            + COLUMN_AMOUNT + " REAL,"
+            + COLUMN_TIMESTAMP + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
+            + COLUMN_STATUS + " TEXT" + ")";
+    
+    // One index per side of a transfer lets history queries seek by customer
+    // and read rows already ordered by timestamp. The amount rides along so
+    // search amount filters are checked in the index, before reading rows.
+    static final String[] CREATE_TRANSACTION_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS " + INDEX_TRANS_FROM + " ON " + TABLE_TRANSACTIONS
+                    + "(" + COLUMN_FROM_CUSTOMER + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_AMOUNT + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_TRANS_TO + " ON " + TABLE_TRANSACTIONS
+                    + "(" + COLUMN_TO_CUSTOMER + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_AMOUNT + ")"
+    };
+    
+    static final String CREATE_LEDGER_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_LEDGER + "("
+            + COLUMN_ENTRY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_ACCOUNT + " TEXT NOT NULL,"
+            + COLUMN_TRANS_ID + " INTEGER,"
+            + COLUMN_AMOUNT + " REAL NOT NULL,"
+            + COLUMN_TIMESTAMP + " DATETIME DEFAULT CURRENT_TIMESTAMP" + ")";
+    
+    // Covers the balance tail sum, so reading a balance never touches the table
+    static final String CREATE_LEDGER_INDEX = "CREATE INDEX IF NOT EXISTS " + INDEX_LEDGER_ACCOUNT
+            + " ON " + TABLE_LEDGER + "(" + COLUMN_ACCOUNT + ", " + COLUMN_ENTRY_ID + ", " + COLUMN_AMOUNT + ")";
+    
+    static final String ADD_SNAPSHOT_COLUMN_SQL = "ALTER TABLE " + TABLE_CUSTOMERS
+            + " ADD COLUMN " + COLUMN_SNAPSHOT_ENTRY_ID + " INTEGER NOT NULL DEFAULT 0";
+    
+    // Snapshot plus every entry appended after it, for customer alias c
+    static final String LIVE_BALANCE = "c." + COLUMN_BALANCE + " + IFNULL((SELECT SUM(e." + COLUMN_AMOUNT
+            + ") FROM " + TABLE_LEDGER + " e WHERE e." + COLUMN_ACCOUNT + " = c." + COLUMN_MOBILE
+            + " AND e." + COLUMN_ENTRY_ID + " > c." + COLUMN_SNAPSHOT_ENTRY_ID + "), 0)";
+    
+    // Customer rows with the live balance in the balance column. Append a WHERE on alias c.
+    static final String CUSTOMER_SELECT_SQL = "SELECT c." + COLUMN_ID + ", c." + COLUMN_NAME + ", c."
+            + COLUMN_MOBILE + ", c." + COLUMN_ACCOUNT_NUMBER + ", c." + COLUMN_UNIQUE_KEY + ", c."
+            + COLUMN_EMAIL_ID + ", c." + COLUMN_UNIQUE_10_DIGIT + ", " + LIVE_BALANCE + " AS " + COLUMN_BALANCE
+            + " FROM " + TABLE_CUSTOMERS + " c";
+    
+    // Binds: mobile. No row when the customer does not exist.
+    static final String LIVE_BALANCE_SQL = "SELECT " + LIVE_BALANCE + " FROM " + TABLE_CUSTOMERS
+            + " c WHERE c." + COLUMN_MOBILE + " = ?";
+    
+    static final String CUSTOMER_EXISTS_SQL = "SELECT COUNT(*) FROM " + TABLE_CUSTOMERS
+            + " WHERE " + COLUMN_MOBILE + " = ?";
+    
+    // Binds: identifier x3. Each arm is one probe on its UNIQUE index.
+    static final String IDENTIFIER_TAKEN_SQL = "SELECT COUNT(*) FROM " + TABLE_CUSTOMERS + " WHERE " 
+            + COLUMN_UNIQUE_KEY + " = ? OR " + COLUMN_EMAIL_ID + " = ? OR " + COLUMN_UNIQUE_10_DIGIT + " = ?";
+    
+    // Binds: account, transaction id (null for adjustments and opening balances), signed amount
+    static final String INSERT_LEDGER_ENTRY_SQL = "INSERT INTO " + TABLE_LEDGER
+            + " (" + COLUMN_ACCOUNT + ", " + COLUMN_TRANS_ID + ", " + COLUMN_AMOUNT + ") VALUES (?, ?, ?)";
+    
+    // Binds: customer id floor. Turns the balances of newly inserted customers
+    // into opening entries, so the ledger alone accounts for every balance.
+    // Run OPEN_ACCOUNTS_SQL first, then CLEAR_OPENED_BALANCES_SQL.
+    static final String OPEN_ACCOUNTS_SQL = "INSERT INTO " + TABLE_LEDGER
+            + " (" + COLUMN_ACCOUNT + ", " + COLUMN_AMOUNT + ") SELECT " + COLUMN_MOBILE + ", " + COLUMN_BALANCE
+            + " FROM " + TABLE_CUSTOMERS + " WHERE " + COLUMN_ID + " > ? AND " + COLUMN_BALANCE + " <> 0";
+    static final String CLEAR_OPENED_BALANCES_SQL = "UPDATE " + TABLE_CUSTOMERS
+            + " SET " + COLUMN_BALANCE + " = 0, " + COLUMN_SNAPSHOT_ENTRY_ID + " = 0 WHERE " + COLUMN_ID + " > ?";
+    
+    static final String MAX_CUSTOMER_ID_SQL = "SELECT IFNULL(MAX(" + COLUMN_ID + "), 0) FROM " + TABLE_CUSTOMERS;
+    static final String MAX_ENTRY_ID_SQL = "SELECT IFNULL(MAX(" + COLUMN_ENTRY_ID + "), 0) FROM " + TABLE_LEDGER;
+    static final String SNAPSHOT_WATERMARK_SQL = "SELECT IFNULL(MAX(" + COLUMN_SNAPSHOT_ENTRY_ID + "), 0) FROM "
+            + TABLE_CUSTOMERS;
+    
+    // Binds: upto, upto, watermark, upto. Folds entries up to 'upto' into the
+    // snapshot of every account that got entries after 'watermark'. The
+    // IN list is a range scan of the newest entries only.
+    static final String COMPACT_LEDGER_SQL = "UPDATE " + TABLE_CUSTOMERS
+            + " SET " + COLUMN_BALANCE + " = " + COLUMN_BALANCE + " + IFNULL((SELECT SUM(e." + COLUMN_AMOUNT
+            + ") FROM " + TABLE_LEDGER + " e WHERE e." + COLUMN_ACCOUNT + " = " + TABLE_CUSTOMERS + "."
+            + COLUMN_MOBILE + " AND e." + COLUMN_ENTRY_ID + " > " + TABLE_CUSTOMERS + "." + COLUMN_SNAPSHOT_ENTRY_ID
+            + " AND e." + COLUMN_ENTRY_ID + " <= ?), 0), " + COLUMN_SNAPSHOT_ENTRY_ID + " = ?"
+            + " WHERE " + COLUMN_MOBILE + " IN (SELECT " + COLUMN_ACCOUNT + " FROM " + TABLE_LEDGER
+            + " WHERE " + COLUMN_ENTRY_ID + " > ? AND " + COLUMN_ENTRY_ID + " <= ?)";
+    
+    static final String CREATE_SUMMARIES_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_SUMMARIES + "("
+            + COLUMN_MOBILE + " TEXT NOT NULL,"
+            + COLUMN_PERIOD + " TEXT NOT NULL,"
+            + COLUMN_BUCKET + " TEXT NOT NULL,"
+            + COLUMN_SENT_TOTAL + " REAL NOT NULL DEFAULT 0,"
+            + COLUMN_SENT_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_RECEIVED_TOTAL + " REAL NOT NULL DEFAULT 0,"
+            + COLUMN_RECEIVED_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + "PRIMARY KEY (" + COLUMN_MOBILE + ", " + COLUMN_PERIOD + ", " + COLUMN_BUCKET + ")"
+            + ") WITHOUT ROWID";
+    
+    // Keeps the summaries current inside whatever transaction inserts the
+    // transfer, whichever code path or store does the insert. Written as
+    // INSERT OR IGNORE + UPDATE because UPSERT needs a newer SQLite than
+    // older devices ship.
+    static final String CREATE_SUMMARIES_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SUMMARIES
+            + " AFTER INSERT ON " + TABLE_TRANSACTIONS + " WHEN NEW." + COLUMN_STATUS + " = 'SUCCESS' BEGIN "
+            + bumpSummary("NEW." + COLUMN_FROM_CUSTOMER, PERIOD_DAY, DAY_BUCKET_LENGTH, COLUMN_SENT_TOTAL, COLUMN_SENT_COUNT)
+            + bumpSummary("NEW." + COLUMN_FROM_CUSTOMER, PERIOD_MONTH, MONTH_BUCKET_LENGTH, COLUMN_SENT_TOTAL, COLUMN_SENT_COUNT)
+            + bumpSummary("NEW." + COLUMN_TO_CUSTOMER, PERIOD_DAY, DAY_BUCKET_LENGTH, 
+                    COLUMN_RECEIVED_TOTAL, COLUMN_RECEIVED_COUNT)
+            + bumpSummary("NEW." + COLUMN_TO_CUSTOMER, PERIOD_MONTH, MONTH_BUCKET_LENGTH, 
+                    COLUMN_RECEIVED_TOTAL, COLUMN_RECEIVED_COUNT)
+            + "END";
+    
+    // Recomputes every summary from the transactions table in one grouped
+    // pass. Used after bulk loads, which run with the trigger dropped.
+    static final String REBUILD_SUMMARIES_SQL = "INSERT INTO " + TABLE_SUMMARIES + " (" + COLUMN_MOBILE + ", "
+            + COLUMN_PERIOD + ", " + COLUMN_BUCKET + ", " + COLUMN_SENT_TOTAL + ", " + COLUMN_SENT_COUNT + ", "
+            + COLUMN_RECEIVED_TOTAL + ", " + COLUMN_RECEIVED_COUNT + ")"
+            + " SELECT m, p, b, SUM(st), SUM(sc), SUM(rt), SUM(rc) FROM ("
+            + summarySide(COLUMN_FROM_CUSTOMER, PERIOD_DAY, DAY_BUCKET_LENGTH, true) + " UNION ALL "
+            + summarySide(COLUMN_FROM_CUSTOMER, PERIOD_MONTH, MONTH_BUCKET_LENGTH, true) + " UNION ALL "
+            + summarySide(COLUMN_TO_CUSTOMER, PERIOD_DAY, DAY_BUCKET_LENGTH, false) + " UNION ALL "
+            + summarySide(COLUMN_TO_CUSTOMER, PERIOD_MONTH, MONTH_BUCKET_LENGTH, false)
+            + ") GROUP BY m, p, b";
+    
+    // Binds: mobile, period, first bucket, last bucket. A primary key range seek.
+    static final String SUMMARY_RANGE_SQL = "SELECT " + COLUMN_BUCKET + ", " + COLUMN_SENT_TOTAL + ", "
+            + COLUMN_SENT_COUNT + ", " + COLUMN_RECEIVED_TOTAL + ", " + COLUMN_RECEIVED_COUNT
+            + " FROM " + TABLE_SUMMARIES + " WHERE " + COLUMN_MOBILE + " = ? AND " + COLUMN_PERIOD + " = ?"
+            + " AND " + COLUMN_BUCKET + " BETWEEN ? AND ? ORDER BY " + COLUMN_BUCKET;
+    
+    static final String CREATE_CHAT_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_CHAT + "("
+            + COLUMN_MOBILE + " TEXT NOT NULL,"
+            + COLUMN_SEQ + " INTEGER NOT NULL,"
+            + COLUMN_FROM_USER + " INTEGER NOT NULL,"
+            + COLUMN_MESSAGE + " TEXT NOT NULL,"
+            + COLUMN_TIMESTAMP + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
+            + "PRIMARY KEY (" + COLUMN_MOBILE + ", " + COLUMN_SEQ + ")"
+            + ") WITHOUT ROWID";
+    
+    static final String CREATE_SEARCH_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_SEARCH 
+            + " USING fts4(content=\"" + TABLE_CUSTOMERS + "\", " + COLUMN_NAME + ", " + COLUMN_MOBILE + ", " 
+            + COLUMN_EMAIL_ID + ", tokenize=unicode61)";
+    
+    // Only the indexed columns fire the update triggers, so balance and
+    // snapshot writes to customers never touch the index
+    private static final String SEARCH_COLUMNS = COLUMN_NAME + ", " + COLUMN_MOBILE + ", " + COLUMN_EMAIL_ID;
+    static final String CREATE_SEARCH_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SEARCH_INSERT 
+            + " AFTER INSERT ON " + TABLE_CUSTOMERS + " BEGIN " + indexCustomer("NEW") + " END";
+    static final String[] CREATE_SEARCH_TRIGGERS = {
+            CREATE_SEARCH_INSERT_TRIGGER,
+            "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SEARCH_BEFORE_UPDATE + " BEFORE UPDATE OF " + SEARCH_COLUMNS 
+                    + " ON " + TABLE_CUSTOMERS + " BEGIN " + unindexCustomer() + " END",
+            "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SEARCH_AFTER_UPDATE + " AFTER UPDATE OF " + SEARCH_COLUMNS 
+                    + " ON " + TABLE_CUSTOMERS + " BEGIN " + indexCustomer("NEW") + " END",
+            "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_SEARCH_DELETE + " BEFORE DELETE ON " + TABLE_CUSTOMERS
+                    + " BEGIN " + unindexCustomer() + " END"
+    };
+    
+    // Indexes customers inserted while the insert trigger was dropped. Binds: customer id floor.
+    static final String INDEX_NEW_CUSTOMERS_SQL = "INSERT INTO " + TABLE_SEARCH + " (docid, " + SEARCH_COLUMNS 
+            + ") SELECT " + COLUMN_ID + ", " + SEARCH_COLUMNS + " FROM " + TABLE_CUSTOMERS 
+            + " WHERE " + COLUMN_ID + " > ?";
+    
+    static final String CREATE_OUTBOX_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + "("
+            + COLUMN_TRANS_ID + " INTEGER PRIMARY KEY,"
+            + COLUMN_OUTBOX_STATE + " INTEGER NOT NULL DEFAULT " + OUTBOX_PENDING + ","
+            + COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0" + ")";
+    
+    static final String CREATE_OUTBOX_INDEX = "CREATE INDEX IF NOT EXISTS " + INDEX_OUTBOX_DUE + " ON " 
+            + TABLE_OUTBOX + "(" + COLUMN_OUTBOX_STATE + ", " + COLUMN_NEXT_ATTEMPT_AT + ")";
+    
+    // Bulk loads drop it, so synthetic data is never sent
+    static final String CREATE_OUTBOX_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " + TRIGGER_OUTBOX 
+            + " AFTER INSERT ON " + TABLE_TRANSACTIONS + " WHEN NEW." + COLUMN_STATUS + " = 'SUCCESS'"
+            + " BEGIN INSERT INTO " + TABLE_OUTBOX + " (" + COLUMN_TRANS_ID + ") VALUES (NEW." + COLUMN_TRANS_ID 
+            + "); END";
+    
+    // Binds: time, transaction id
+    static final String LEASE_OUTBOX_SQL = "UPDATE " + TABLE_OUTBOX + " SET " + COLUMN_NEXT_ATTEMPT_AT 
+            + " = ? WHERE " + COLUMN_TRANS_ID + " = ?";
+    static final String RETRY_OUTBOX_SQL = "UPDATE " + TABLE_OUTBOX + " SET " + COLUMN_ATTEMPTS + " = " 
+            + COLUMN_ATTEMPTS + " + 1, " + COLUMN_NEXT_ATTEMPT_AT + " = ? WHERE " + COLUMN_TRANS_ID + " = ?";
+    static final String REJECT_OUTBOX_SQL = "UPDATE " + TABLE_OUTBOX + " SET " + COLUMN_OUTBOX_STATE + " = " 
+            + OUTBOX_REJECTED + ", " + COLUMN_ATTEMPTS + " = " + COLUMN_ATTEMPTS + " + 1, " 
+            + COLUMN_NEXT_ATTEMPT_AT + " = ? WHERE " + COLUMN_TRANS_ID + " = ?";
+    // Binds: transaction id
+    static final String DELETE_OUTBOX_SQL = "DELETE FROM " + TABLE_OUTBOX + " WHERE " + COLUMN_TRANS_ID + " = ?";
+    
+    static final String NEXT_OUTBOX_ATTEMPT_SQL = "SELECT IFNULL(MIN(" + COLUMN_NEXT_ATTEMPT_AT + "), -1) FROM " 
+            + TABLE_OUTBOX + " WHERE " + COLUMN_OUTBOX_STATE + " = " + OUTBOX_PENDING;
+    
+    static final String CREATE_SEQUENCES_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_SEQUENCES + "("
+            + COLUMN_SEQUENCE_NAME + " TEXT PRIMARY KEY,"
+            + COLUMN_NEXT_VALUE + " INTEGER NOT NULL" + ")";
+    
+    static final String INIT_CUSTOMER_SEQUENCE_SQL = "INSERT OR IGNORE INTO " + TABLE_SEQUENCES + " VALUES ('" 
+            + SEQUENCE_CUSTOMERS + "', 1)";
+    
+    // Binds: sequence name
+    static final String NEXT_SEQUENCE_VALUE_SQL = "SELECT " + COLUMN_NEXT_VALUE + " FROM " + TABLE_SEQUENCES 
+            + " WHERE " + COLUMN_SEQUENCE_NAME + " = ?";
+    // Binds: block size, sequence name. Run in the transaction that uses the block.
+    static final String RESERVE_SEQUENCE_SQL = "UPDATE " + TABLE_SEQUENCES + " SET " + COLUMN_NEXT_VALUE + " = " 
+            + COLUMN_NEXT_VALUE + " + ? WHERE " + COLUMN_SEQUENCE_NAME + " = ?";
+    
+    // Re-reads every customer into the index, for migrations and bulk loads
+    // that run with the triggers dropped
+    static final String REBUILD_SEARCH_SQL = "INSERT INTO " + TABLE_SEARCH + "(" + TABLE_SEARCH + ") VALUES('rebuild')";
+    
+    // Binds: mobile, seq, from user (0/1), message
+    static final String INSERT_CHAT_MESSAGE_SQL = "INSERT INTO " + TABLE_CHAT
+            + " (" + COLUMN_MOBILE + ", " + COLUMN_SEQ + ", " + COLUMN_FROM_USER + ", " + COLUMN_MESSAGE
+            + ") VALUES (?, ?, ?, ?)";
+    
+    // Accounts whose snapshot-based balance differs from a full replay of the ledger
+    static final String VERIFY_BALANCES_SQL = "SELECT " + COLUMN_MOBILE + ", " + COLUMN_BALANCE + ", rebuilt FROM ("
+            + "SELECT c." + COLUMN_MOBILE + ", " + LIVE_BALANCE + " AS " + COLUMN_BALANCE
+            + ", IFNULL((SELECT SUM(a." + COLUMN_AMOUNT + ") FROM " + TABLE_LEDGER + " a WHERE a."
+            + COLUMN_ACCOUNT + " = c." + COLUMN_MOBILE + "), 0) AS rebuilt FROM " + TABLE_CUSTOMERS + " c)"
+            + " WHERE ABS(" + COLUMN_BALANCE + " - rebuilt) > 0.005";
+    
+    // Transfers whose debit and credit entries do not cancel out
+    static final String VERIFY_TRANSFERS_SQL = "SELECT " + COLUMN_TRANS_ID + ", SUM(" + COLUMN_AMOUNT + ") FROM "
+            + TABLE_LEDGER + " WHERE " + COLUMN_TRANS_ID + " IS NOT NULL GROUP BY " + COLUMN_TRANS_ID
+            + " HAVING ABS(SUM(" + COLUMN_AMOUNT + ")) > 0.005";
+    
+    // Binds: name, mobile, account number, unique key, email ID, balance, unique 10 digit
+    static final String INSERT_CUSTOMER_SQL = "INSERT INTO " + TABLE_CUSTOMERS
+            + " (" + COLUMN_NAME + ", " + COLUMN_MOBILE + ", " + COLUMN_ACCOUNT_NUMBER + ", "
+            + COLUMN_UNIQUE_KEY + ", " + COLUMN_EMAIL_ID + ", " + COLUMN_BALANCE + ", "
+            + COLUMN_UNIQUE_10_DIGIT + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    // Binds: from, to, amount, timestamp, status
+    static final String INSERT_SEEDED_TRANSACTION_SQL = "INSERT INTO " + TABLE_TRANSACTIONS
+            + " (" + COLUMN_FROM_CUSTOMER + ", " + COLUMN_TO_CUSTOMER + ", " + COLUMN_AMOUNT + ", "
+            + COLUMN_TIMESTAMP + ", " + COLUMN_STATUS + ") VALUES (?, ?, ?, ?, ?)";
+    
+    // Binds: from, to, amount, status
+    static final String INSERT_TRANSACTION_SQL = "INSERT INTO " + TABLE_TRANSACTIONS
+            + " (" + COLUMN_FROM_CUSTOMER + ", " + COLUMN_TO_CUSTOMER + ", "
+            + COLUMN_AMOUNT + ", " + COLUMN_STATUS + ") VALUES (?, ?, ?, ?)";
+    
+    static final String HISTORY_COLUMNS = COLUMN_TRANS_ID + ", " + COLUMN_FROM_CUSTOMER + ", "
+            + COLUMN_TO_CUSTOMER + ", " + COLUMN_AMOUNT + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_STATUS;
+    
+    // Each arm seeks its own index; SQLite merges the two ordered streams
+    // instead of scanning the table and sorting. The second arm skips
+    // self-transfers so they are not listed twice. Binds: mobile x3.
+    static final String HISTORY_SQL = "SELECT " + HISTORY_COLUMNS + " FROM " + TABLE_TRANSACTIONS
+            + " WHERE " + COLUMN_FROM_CUSTOMER + "=?"
+            + " UNION ALL SELECT " + HISTORY_COLUMNS + " FROM " + TABLE_TRANSACTIONS
+            + " WHERE " + COLUMN_TO_CUSTOMER + "=? AND " + COLUMN_FROM_CUSTOMER + "<>?"
+            + " ORDER BY " + COLUMN_TIMESTAMP + " DESC, " + COLUMN_TRANS_ID + " DESC";
+    
+    // Statement exports read this many rows per query, few enough to fit one CursorWindow
+    static final int EXPORT_CHUNK_ROWS = 2000;
+    // Binds for an export range left open at either end; timestamps sort between them
+    static final String OPEN_RANGE_START = "";
+    static final String OPEN_RANGE_END = "\uffff";
+    
+    // Rows in an export range, for progress. Binds: mobile, from, to, mobile, mobile, from, to.
+    static final String EXPORT_COUNT_SQL = "SELECT (SELECT COUNT(*) FROM " + TABLE_TRANSACTIONS
+            + " WHERE " + COLUMN_FROM_CUSTOMER + "=? AND " + COLUMN_TIMESTAMP + ">=? AND " + COLUMN_TIMESTAMP + "<?)"
+            + " + (SELECT COUNT(*) FROM " + TABLE_TRANSACTIONS
+            + " WHERE " + COLUMN_TO_CUSTOMER + "=? AND " + COLUMN_FROM_CUSTOMER + "<>? AND "
+            + COLUMN_TIMESTAMP + ">=? AND " + COLUMN_TIMESTAMP + "<?)";
+    
+    private LedgerSchema() {}
+    
+    private static String bumpSummary(String mobile, String period, int bucketLength, 
+                                      String totalColumn, String countColumn) {
+        String bucket = "substr(NEW." + COLUMN_TIMESTAMP + ", 1, " + bucketLength + ")";
+        return "INSERT OR IGNORE INTO " + TABLE_SUMMARIES + " (" + COLUMN_MOBILE + ", " + COLUMN_PERIOD + ", "
+                + COLUMN_BUCKET + ") VALUES (" + mobile + ", '" + period + "', " + bucket + "); "
+                + "UPDATE " + TABLE_SUMMARIES + " SET " + totalColumn + " = " + totalColumn + " + NEW." + COLUMN_AMOUNT
+                + ", " + countColumn + " = " + countColumn + " + 1 WHERE " + COLUMN_MOBILE + " = " + mobile
+                + " AND " + COLUMN_PERIOD + " = '" + period + "' AND " + COLUMN_BUCKET + " = " + bucket + "; ";
+    }
+    
+    private static String indexCustomer(String row) {
+        return "INSERT INTO " + TABLE_SEARCH + " (docid, " + SEARCH_COLUMNS + ") VALUES (" + row + "." + COLUMN_ID 
+                + ", " + row + "." + COLUMN_NAME + ", " + row + "." + COLUMN_MOBILE + ", " + row + "." 
+                + COLUMN_EMAIL_ID + ");";
+    }
+    
+    private static String unindexCustomer() {
+        return "DELETE FROM " + TABLE_SEARCH + " WHERE docid = OLD." + COLUMN_ID + ";";
+    }
+    
+    private static String summarySide(String mobileColumn, String period, int bucketLength, boolean sent) {
+        String amounts = sent ? COLUMN_AMOUNT + " AS st, 1 AS sc, 0 AS rt, 0 AS rc" 
+                : "0 AS st, 0 AS sc, " + COLUMN_AMOUNT + " AS rt, 1 AS rc";
+        return "SELECT " + mobileColumn + " AS m, '" + period + "' AS p, substr(" + COLUMN_TIMESTAMP + ", 1, "
+                + bucketLength + ") AS b, " + amounts + " FROM " + TABLE_TRANSACTIONS
+                + " WHERE " + COLUMN_STATUS + " = 'SUCCESS'";
+    }
+    
+    /**
+     * History page query. Keyset on (timestamp, transaction_id) rather than
+     * OFFSET, so every page is an index seek no matter how deep the user has
+     * scrolled. Pair with {@link #historyPageArgs}.
+     */
+    static String historyPageSql(boolean hasAnchor, boolean newer, int limit) {
+        String keyset = "";
+        if (hasAnchor) {
+            String cmp = newer ? ">" : "<";
+            keyset = " AND " + COLUMN_TIMESTAMP + cmp + "=? AND (" + COLUMN_TIMESTAMP + cmp + "? OR "
+                    + COLUMN_TRANS_ID + cmp + "?)";
+        }
+        String order = newer ? " ASC" : " DESC";
+        return "SELECT " + HISTORY_COLUMNS + " FROM " + TABLE_TRANSACTIONS
+                + " WHERE " + COLUMN_FROM_CUSTOMER + "=?" + keyset
+                + " UNION ALL SELECT " + HISTORY_COLUMNS + " FROM " + TABLE_TRANSACTIONS
+                + " WHERE " + COLUMN_TO_CUSTOMER + "=? AND " + COLUMN_FROM_CUSTOMER + "<>?" + keyset
+                + " ORDER BY " + COLUMN_TIMESTAMP + order + ", " + COLUMN_TRANS_ID + order
+                + " LIMIT " + limit;
+    }
+    
+    /**
+     * Chat page query, a primary key seek from an anchor seq. Binds: mobile,
+     * anchor seq. Older pages come back newest first, newer pages oldest first.
+     */
+    static String chatPageSql(boolean newer, int limit) {
+        return "SELECT " + COLUMN_SEQ + ", " + COLUMN_FROM_USER + ", " + COLUMN_MESSAGE + " FROM " + TABLE_CHAT
+                + " WHERE " + COLUMN_MOBILE + "=? AND " + COLUMN_SEQ + (newer ? ">?" : "<?")
+                + " ORDER BY " + COLUMN_SEQ + (newer ? " ASC" : " DESC") + " LIMIT " + limit;
+    }
+    
+    /**
+     * Statement export query: the next chunk of a customer's history in a
+     * timestamp range, oldest first. Each arm is a range seek on its
+     * (customer, timestamp) index, and the keyset continues after the last
+     * row of the previous chunk. Pair with {@link #exportHistoryArgs}.
+     */
+    static String exportHistorySql(boolean hasAnchor, int limit) {
+        String range = " AND " + COLUMN_TIMESTAMP + ">=? AND " + COLUMN_TIMESTAMP + "<?";
+        if (hasAnchor) {
+            range += " AND " + COLUMN_TIMESTAMP + ">=? AND (" + COLUMN_TIMESTAMP + ">? OR " 
+                    + COLUMN_TRANS_ID + ">?)";
+        }
+        return "SELECT " + HISTORY_COLUMNS + " FROM " + TABLE_TRANSACTIONS
+                + " WHERE " + COLUMN_FROM_CUSTOMER + "=?" + range
+                + " UNION ALL SELECT " + HISTORY_COLUMNS + " FROM " + TABLE_TRANSACTIONS
+                + " WHERE " + COLUMN_TO_CUSTOMER + "=? AND " + COLUMN_FROM_CUSTOMER + "<>?" + range
+                + " ORDER BY " + COLUMN_TIMESTAMP + ", " + COLUMN_TRANS_ID
+                + " LIMIT " + limit;
+    }
+    
+    /** Null dates leave that end of the range open; a null anchor starts from the beginning. */
+    static String[] exportHistoryArgs(String customerMobile, String fromDate, String toDate, 
+                                      String anchorTimestamp, long anchorId) {
+        String from = fromDate != null ? fromDate : OPEN_RANGE_START;
+        String to = toDate != null ? toDate : OPEN_RANGE_END;
+        if (anchorTimestamp == null) {
+            return new String[]{customerMobile, from, to, customerMobile, customerMobile, from, to};
+        }
+        String id = String.valueOf(anchorId);
+        return new String[]{customerMobile, from, to, anchorTimestamp, anchorTimestamp, id,
+                customerMobile, customerMobile, from, to, anchorTimestamp, anchorTimestamp, id};
+    }
+    
+    /**
+     * History search: one customer's transactions matching {@code search},
+     * newest first, keyset-paged like {@link #historyPageSql}. Each arm walks
+     * its (customer, timestamp, amount) index over the date range, checking
+     * the amount there, and stops once a page is found. Each text term must
+     * match the counterparty in the customer index or prefix the status;
+     * the matching customers are looked up once per statement. Binds are
+     * appended to {@code args}.
+     */
+    static String searchHistorySql(TransactionSearch search, Transaction olderThan, int limit, List<String> args) {
+        String sent = searchArm(search, olderThan, true, args);
+        String received = searchArm(search, olderThan, false, args);
+        return sent + " UNION ALL " + received
+                + " ORDER BY " + COLUMN_TIMESTAMP + " DESC, " + COLUMN_TRANS_ID + " DESC"
+                + " LIMIT " + limit;
+    }
+    
+    private static String searchArm(TransactionSearch search, Transaction olderThan, boolean sent, 
+                                    List<String> args) {
+        String mobile = search.getCustomerMobile();
+        StringBuilder sql = new StringBuilder("SELECT ").append(HISTORY_COLUMNS).append(" FROM ")
+                .append(TABLE_TRANSACTIONS).append(" WHERE ");
+        if (sent) {
+            sql.append(COLUMN_FROM_CUSTOMER).append("=?");
+            args.add(mobile);
+        } else {
+            // Self-transfers are listed by the sent arm only
+            sql.append(COLUMN_TO_CUSTOMER).append("=? AND ").append(COLUMN_FROM_CUSTOMER).append("<>?");
+            args.add(mobile);
+            args.add(mobile);
+        }
+        if (search.getFromDate() != null) {
+            sql.append(" AND ").append(COLUMN_TIMESTAMP).append(">=?");
+            args.add(search.getFromDate());
+        }
+        if (search.getToDate() != null) {
+            sql.append(" AND ").append(COLUMN_TIMESTAMP).append("<?");
+            args.add(search.getToDate());
+        }
+        if (olderThan != null) {
+            sql.append(" AND ").append(COLUMN_TIMESTAMP).append("<=? AND (").append(COLUMN_TIMESTAMP)
+                    .append("<? OR ").append(COLUMN_TRANS_ID).append("<?)");
+            args.add(olderThan.getTimestamp());
+            args.add(olderThan.getTimestamp());
+            args.add(String.valueOf(olderThan.getTransactionId()));
+        }
+        // Text binds are compared with the REAL column's affinity, so "12.5" compares as a number
+        if (search.getMinAmount() != null) {
+            sql.append(" AND ").append(COLUMN_AMOUNT).append(">=?");
+            args.add(String.valueOf(search.getMinAmount()));
+        }
+        if (search.getMaxAmount() != null) {
+            sql.append(" AND ").append(COLUMN_AMOUNT).append("<=?");
+            args.add(String.valueOf(search.getMaxAmount()));
+        }
+        String counterparty = sent ? COLUMN_TO_CUSTOMER : COLUMN_FROM_CUSTOMER;
+        for (String term : search.getTerms()) {
+            sql.append(" AND (").append(counterparty).append(" IN (SELECT ").append(COLUMN_MOBILE).append(" FROM ")
+                    .append(TABLE_CUSTOMERS).append(" WHERE ").append(COLUMN_ID).append(" IN (SELECT docid FROM ")
+                    .append(TABLE_SEARCH).append(" WHERE ").append(TABLE_SEARCH).append(" MATCH ?)) OR ")
+                    .append(COLUMN_STATUS).append(" LIKE ?)");
+            // Terms are letters and digits only, so neither bind can carry query syntax
+            args.add(term + "*");
+            args.add(term + "%");
+        }
+        return sql.toString();
+    }
+    
+    /**
+     * Due outbox entries with their transfers, earliest due first; a seek on
+     * the (state, next_attempt_at) index. Binds: now.
+     */
+    static String outboxBatchSql(int limit) {
+        return "SELECT o." + COLUMN_TRANS_ID + ", t." + COLUMN_FROM_CUSTOMER + ", t." + COLUMN_TO_CUSTOMER + ", t." 
+                + COLUMN_AMOUNT + ", t." + COLUMN_TIMESTAMP + ", o." + COLUMN_ATTEMPTS + " FROM " + TABLE_OUTBOX 
+                + " o JOIN " + TABLE_TRANSACTIONS + " t ON t." + COLUMN_TRANS_ID + " = o." + COLUMN_TRANS_ID 
+                + " WHERE o." + COLUMN_OUTBOX_STATE + " = " + OUTBOX_PENDING + " AND o." + COLUMN_NEXT_ATTEMPT_AT 
+                + " <= ? ORDER BY o." + COLUMN_NEXT_ATTEMPT_AT + ", o." + COLUMN_TRANS_ID + " LIMIT " + limit;
+    }
+    
+    /** Which of {@code count} bound unique 10-digit numbers are already taken; one index probe each. */
+    static String takenUnique10DigitsSql(int count) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMN_UNIQUE_10_DIGIT + " FROM " + TABLE_CUSTOMERS 
+                + " WHERE " + COLUMN_UNIQUE_10_DIGIT + " IN (?");
+        for (int i = 1; i < count; i++) {
+            sql.append(", ?");
+        }
+        return sql.append(')').toString();
+    }
+    
+    static String[] historyPageArgs(String customerMobile, Transaction anchor) {
+        if (anchor == null) {
+            return new String[]{customerMobile, customerMobile, customerMobile};
+        }
+        String timestamp = anchor.getTimestamp();
+        String id = String.valueOf(anchor.getTransactionId());
+        return new String[]{customerMobile, timestamp, timestamp, id,
+                customerMobile, customerMobile, timestamp, timestamp, id};
+    }
+}
+
+// LedgerStore.java
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Persistence operations behind the payment screens. DatabaseHelper is the
+ * on-device implementation; JdbcLedgerStore runs the same schema on a plain
+ * JVM so the data layer can be profiled without an emulator.
+ */
+public interface LedgerStore {
+    Customer getCustomerByMobile(String mobile);
+    
+    Customer getCustomerByEmailId(String emailId);
+    
+    boolean updateBalance(String mobile, double newBalance);
+    
+    long addTransaction(String fromCustomer, String toCustomer, double amount, String status);
+    
+    /** @return the id of the recorded transaction, or -1 if nothing was changed */
+    long transfer(String fromMobile, String toMobile, double amount);
+    
+    /**
+     * Runs many transfers in one database transaction. A source that cannot
+     * cover the total of its valid items fails all of them.
+     *
+     * @return per request, the id of the recorded transaction or -1 if it failed
+     */
+    long[] bulkTransfer(List<TransferRequest> requests);
+    
+    List<Transaction> getTransactionHistory(String customerMobile);
+    
+    /** Newest-first page of transactions older than {@code olderThan}; null for the first page. */
+    List<Transaction> getTransactionHistoryPage(String customerMobile, Transaction olderThan, int limit);
+    
+    /** Newest-first page of matches older than {@code olderThan}; null for the first page. */
+    List<Transaction> searchTransactionHistory(TransactionSearch search, Transaction olderThan, int limit);
+    
+    /**
+     * Streams the transactions between two dates, oldest first, into
+     * {@code exporter} and finishes it; the exporter is closed either way.
+     * {@code fromDate} is inclusive and {@code toDate} exclusive, compared
+     * as text with the stored timestamps, and null leaves that end open.
+     *
+     * @return the number of rows exported
+     */
+    long exportTransactionHistory(String customerMobile, String fromDate, String toDate, 
+                                  HistoryExporter exporter) throws IOException;
+    
+    /**
+     * Leases up to {@code limit} outbox entries due at {@code now} until
+     * {@code now + leaseMillis}, so another claim skips them and they come
+     * due again if the sender dies.
+     */
+    List<OutboxEntry> claimOutboxBatch(long now, long leaseMillis, int limit);
+    
+    /** Removes entries the backend has accepted. */
+    void acknowledgeOutbox(List<OutboxEntry> entries);
+    
+    void retryOutbox(List<OutboxEntry> entries, long nextAttemptAt);
+    
+    /** Parks entries the backend refused; they are not sent again. */
+    void rejectOutbox(List<OutboxEntry> entries);
+    
+    /** @return when the next pending entry is due, in epoch millis, or -1 if none are pending */
+    long nextOutboxAttemptAt();
+    
+    /** Folds new ledger entries into balance snapshots; @return the number of snapshots advanced */
+    int compactLedger();
+    
+    /** Replays the ledger against the snapshots; @return one line per problem, empty if consistent */
+    List<String> verifyLedger();
+}
+
+// JdbcLedgerStore.java
+package com.OnePay.paymentapp;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.OnePay.paymentapp.LedgerSchema.*;
+
+/**
+ * LedgerStore over JDBC, meant for sqlite-jdbc on a desktop JVM. Uses the
+ * same schema and statements as DatabaseHelper so load tests and profiles
+ * reflect what runs on the device.
+ *
+ * Every method that touches the connection holds the store's lock: several
+ * of them switch auto-commit off around a transaction, and both
+ * TransferService and OutboxSync call in from their own threads. Open one
+ * store per thread for parallel access.
+ */
+public class JdbcLedgerStore implements LedgerStore, AutoCloseable {
+    private final Connection connection;
+    
+    /** Opens e.g. {@code jdbc:sqlite:/tmp/OnePay.db} and creates the schema if missing. */
+    public JdbcLedgerStore(String jdbcUrl) throws SQLException {
+        this.connection = DriverManager.getConnection(jdbcUrl);
+        try (Statement statement = connection.createStatement()) {
+            // Match the device configuration
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute(CREATE_CUSTOMERS_TABLE.replace("CREATE TABLE ", "CREATE TABLE IF NOT EXISTS "));
+            statement.execute(CREATE_TRANSACTIONS_TABLE.replace("CREATE TABLE ", "CREATE TABLE IF NOT EXISTS "));
+            for (String createIndex : CREATE_TRANSACTION_INDEXES) {
+                statement.execute(createIndex);
+            }
+            statement.execute(CREATE_LEDGER_TABLE);
+            statement.execute(CREATE_LEDGER_INDEX);
+            statement.execute(CREATE_SUMMARIES_TABLE);
+            statement.execute(CREATE_SUMMARIES_TRIGGER);
+            statement.execute(CREATE_SEARCH_TABLE);
+            for (String createTrigger : CREATE_SEARCH_TRIGGERS) {
+                statement.execute(createTrigger);
+            }
+            statement.execute(CREATE_OUTBOX_TABLE);
+            statement.execute(CREATE_OUTBOX_INDEX);
+            statement.execute(CREATE_OUTBOX_TRIGGER);
+        }
+    }
+    
+    /** Callers that use the connection directly should hold the store's lock. */
+    public Connection getConnection() {
+        return connection;
+    }
+    
+    @Override
+    public synchronized Customer getCustomerByMobile(String mobile) {
+        return queryCustomer(COLUMN_MOBILE, mobile);
+    }
+    
+    @Override
+    public synchronized Customer getCustomerByEmailId(String emailId) {
+        return queryCustomer(COLUMN_EMAIL_ID, emailId);
+    }
+    
+    private Customer queryCustomer(String column, String value) {
+        String sql = CUSTOMER_SELECT_SQL + " WHERE c." + column + "=?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, value);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Customer customer = new Customer();
+                customer.setId(rs.getInt(COLUMN_ID));
+                customer.setName(rs.getString(COLUMN_NAME));
+                customer.setMobile(rs.getString(COLUMN_MOBILE));
+                customer.setAccountNumber(rs.getString(COLUMN_ACCOUNT_NUMBER));
+                customer.setUniqueKey(rs.getString(COLUMN_UNIQUE_KEY));
+                customer.setEmailId(rs.getString(COLUMN_EMAIL_ID));
+                customer.setBalance(rs.getDouble(COLUMN_BALANCE));
+                customer.setUnique10Digit(rs.getString(COLUMN_UNIQUE_10_DIGIT));
+                return customer;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Customer lookup failed", e);
+        }
+    }
+    
+    @Override
+    public synchronized boolean updateBalance(String mobile, double newBalance) {
+        try {
+            connection.setAutoCommit(false);
+            try {
+                Double current = readLiveBalance(mobile);
+                if (current != null && newBalance != current) {
+                    appendEntry(mobile, 0, newBalance - current);
+                }
+                connection.commit();
+                return current != null;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Balance update failed", e);
+        }
+    }
+    
+    private Double readLiveBalance(String mobile) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(LIVE_BALANCE_SQL)) {
+            statement.setString(1, mobile);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : null;
+            }
+        }
+    }
+    
+    private long longForQuery(String sql, String... args) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setString(i + 1, args[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+    
+    /** Appends one signed entry; a transactionId of 0 or less records none. */
+    private void appendEntry(String account, long transactionId, double amount) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_LEDGER_ENTRY_SQL)) {
+            insert.setString(1, account);
+            if (transactionId > 0) {
+                insert.setLong(2, transactionId);
+            } else {
+                insert.setNull(2, Types.INTEGER);
+            }
+            insert.setDouble(3, amount);
+            insert.executeUpdate();
+        }
+    }
+    
+    @Override
+    public synchronized long addTransaction(String fromCustomer, String toCustomer, double amount, String status) {
+        try {
+            return insertTransaction(fromCustomer, toCustomer, amount, status);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Transaction insert failed", e);
+        }
+    }
+    
+    private long insertTransaction(String fromCustomer, String toCustomer, double amount, String status)
+            throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_TRANSACTION_SQL, 
+                Statement.RETURN_GENERATED_KEYS)) {
+            insert.setString(1, fromCustomer);
+            insert.setString(2, toCustomer);
+            insert.setDouble(3, amount);
+            insert.setString(4, status);
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                return keys.next() ? keys.getLong(1) : -1;
+            }
+        }
+    }
+    
+    @Override
+    public synchronized long transfer(String fromMobile, String toMobile, double amount) {
+        if (amount <= 0 || fromMobile.equals(toMobile)) {
+            return -1;
+        }
+        
+        try {
+            // One connection per store, so nothing can append between the
+            // balance read and the debit below
+            connection.setAutoCommit(false);
+            try {
+                Double senderBalance = readLiveBalance(fromMobile);
+                long transactionId = -1;
+                if (senderBalance != null && senderBalance >= amount 
+                        && longForQuery(CUSTOMER_EXISTS_SQL, toMobile) > 0) {
+                    transactionId = insertTransaction(fromMobile, toMobile, amount, "SUCCESS");
+                }
+                if (transactionId != -1) {
+                    appendEntry(fromMobile, transactionId, -amount);
+                    appendEntry(toMobile, transactionId, amount);
+                }
+                
+                if (transactionId != -1) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+                return transactionId;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Transfer failed", e);
+        }
+    }
+    
+    /** Same checks as DatabaseHelper: recipients looked up once, one balance read per source. */
+    @Override
+    public synchronized long[] bulkTransfer(List<TransferRequest> requests) {
+        long[] results = new long[requests.size()];
+        Arrays.fill(results, -1);
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement exists = connection.prepareStatement(CUSTOMER_EXISTS_SQL);
+                 PreparedStatement insert = connection.prepareStatement(INSERT_TRANSACTION_SQL, 
+                         Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement entry = connection.prepareStatement(INSERT_LEDGER_ENTRY_SQL)) {
+                insert.setString(4, "SUCCESS");
+                
+                // Validate every item and total what each source owes
+                boolean[] valid = new boolean[requests.size()];
+                Map<String, Double> totalBySource = new HashMap<>();
+                Map<String, Boolean> recipientExists = new HashMap<>();
+                for (int i = 0; i < requests.size(); i++) {
+                    TransferRequest request = requests.get(i);
+                    if (request.getAmount() <= 0 || request.getFromMobile().equals(request.getToMobile())) {
+                        continue;
+                    }
+                    Boolean known = recipientExists.get(request.getToMobile());
+                    if (known == null) {
+                        exists.setString(1, request.getToMobile());
+                        try (ResultSet rs = exists.executeQuery()) {
+                            known = rs.next() && rs.getLong(1) > 0;
+                        }
+                        recipientExists.put(request.getToMobile(), known);
+                    }
+                    if (!known) {
+                        continue;
+                    }
+                    valid[i] = true;
+                    Double total = totalBySource.get(request.getFromMobile());
+                    totalBySource.put(request.getFromMobile(), 
+                            (total != null ? total : 0.0) + request.getAmount());
+                }
+                
+                // One balance check per source account
+                Set<String> fundedSources = new HashSet<>();
+                for (Map.Entry<String, Double> total : totalBySource.entrySet()) {
+                    Double balance = readLiveBalance(total.getKey());
+                    if (balance != null && balance >= total.getValue()) {
+                        fundedSources.add(total.getKey());
+                    }
+                }
+                
+                for (int i = 0; i < requests.size(); i++) {
+                    TransferRequest request = requests.get(i);
+                    if (!valid[i] || !fundedSources.contains(request.getFromMobile())) {
+                        continue;
+                    }
+                    insert.setString(1, request.getFromMobile());
+                    insert.setString(2, request.getToMobile());
+                    insert.setDouble(3, request.getAmount());
+                    insert.executeUpdate();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        results[i] = keys.next() ? keys.getLong(1) : -1;
+                    }
+                    addEntry(entry, request.getFromMobile(), results[i], -request.getAmount());
+                    addEntry(entry, request.getToMobile(), results[i], request.getAmount());
+                }
+                // Ledger entries have no keys to read back, so they go in as one batch
+                entry.executeBatch();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Bulk transfer failed", e);
+        }
+        return results;
+    }
+    
+    private static void addEntry(PreparedStatement entry, String account, long transactionId, double amount) 
+            throws SQLException {
+        entry.setString(1, account);
+        entry.setLong(2, transactionId);
+        entry.setDouble(3, amount);
+        entry.addBatch();
+    }
+    
+    @Override
+    public synchronized List<Transaction> getTransactionHistory(String customerMobile) {
+        return queryTransactions(HISTORY_SQL, new String[]{customerMobile, customerMobile, customerMobile});
+    }
+    
+    @Override
+    public synchronized List<Transaction> getTransactionHistoryPage(String customerMobile, Transaction olderThan, 
+                                                                 int limit) {
+        return queryTransactions(historyPageSql(olderThan != null, false, limit), 
+                historyPageArgs(customerMobile, olderThan));
+    }
+    
+    @Override
+    public synchronized List<Transaction> searchTransactionHistory(TransactionSearch search, Transaction olderThan, 
+                                                                int limit) {
+        if (search.matchesNothing()) {
+            return new ArrayList<>();
+        }
+        List<String> args = new ArrayList<>();
+        String sql = searchHistorySql(search, olderThan, limit, args);
+        return queryTransactions(sql, args.toArray(new String[0]));
+    }
+    
+    /** Same keyset chunks as DatabaseHelper, so export benchmarks here match the device. */
+    @Override
+    public synchronized long exportTransactionHistory(String customerMobile, String fromDate, String toDate, 
+                                                      HistoryExporter exporter) throws IOException {
+        try {
+            exporter.setTotalRows(longForQuery(EXPORT_COUNT_SQL, 
+                    exportHistoryArgs(customerMobile, fromDate, toDate, null, 0)));
+            String anchorTimestamp = null;
+            long anchorId = 0;
+            int chunkRows;
+            do {
+                String[] args = exportHistoryArgs(customerMobile, fromDate, toDate, anchorTimestamp, anchorId);
+                chunkRows = 0;
+                try (PreparedStatement statement = connection.prepareStatement(
+                        exportHistorySql(anchorTimestamp != null, EXPORT_CHUNK_ROWS))) {
+                    for (int i = 0; i < args.length; i++) {
+                        statement.setString(i + 1, args[i]);
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            anchorId = rs.getLong(1);
+                            anchorTimestamp = rs.getString(5);
+                            exporter.writeRow(anchorId, rs.getString(2), rs.getString(3), 
+                                    rs.getDouble(4), anchorTimestamp, rs.getString(6));
+                            chunkRows++;
+                        }
+                    }
+                }
+            } while (chunkRows == EXPORT_CHUNK_ROWS);
+            return exporter.finish();
+        } catch (SQLException e) {
+            throw new IllegalStateException("History export failed", e);
+        } finally {
+            exporter.close();
+        }
+    }
+    
+    @Override
+    public synchronized List<OutboxEntry> claimOutboxBatch(long now, long leaseMillis, int limit) {
+        List<OutboxEntry> batch = new ArrayList<>();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement select = connection.prepareStatement(outboxBatchSql(limit))) {
+                    select.setLong(1, now);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            batch.add(new OutboxEntry(rs.getLong(1), rs.getString(2), rs.getString(3), 
+                                    rs.getDouble(4), rs.getString(5), rs.getInt(6)));
+                        }
+                    }
+                }
+                stampOutbox(LEASE_OUTBOX_SQL, batch, now + leaseMillis);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox claim failed", e);
+        }
+        return batch;
+    }
+    
+    @Override
+    public synchronized void acknowledgeOutbox(List<OutboxEntry> entries) {
+        try (PreparedStatement delete = connection.prepareStatement(DELETE_OUTBOX_SQL)) {
+            for (OutboxEntry entry : entries) {
+                delete.setLong(1, entry.getTransactionId());
+                delete.addBatch();
+            }
+            delete.executeBatch();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox acknowledge failed", e);
+        }
+    }
+    
+    @Override
+    public synchronized void retryOutbox(List<OutboxEntry> entries, long nextAttemptAt) {
+        try {
+            stampOutbox(RETRY_OUTBOX_SQL, entries, nextAttemptAt);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox retry failed", e);
+        }
+    }
+    
+    @Override
+    public synchronized void rejectOutbox(List<OutboxEntry> entries) {
+        try {
+            stampOutbox(REJECT_OUTBOX_SQL, entries, System.currentTimeMillis());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox reject failed", e);
+        }
+    }
+    
+    @Override
+    public synchronized long nextOutboxAttemptAt() {
+        try {
+            return longForQuery(NEXT_OUTBOX_ATTEMPT_SQL);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Outbox query failed", e);
+        }
+    }
+    
+    private void stampOutbox(String sql, List<OutboxEntry> entries, long time) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (OutboxEntry entry : entries) {
+                statement.setLong(1, time);
+                statement.setLong(2, entry.getTransactionId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+    
+    @Override
+    public synchronized int compactLedger() {
+        try {
+            connection.setAutoCommit(false);
+            try {
+                long watermark = longForQuery(SNAPSHOT_WATERMARK_SQL);
+                long upTo = longForQuery(MAX_ENTRY_ID_SQL);
+                int advanced = 0;
+                if (upTo > watermark) {
+                    try (PreparedStatement compact = connection.prepareStatement(COMPACT_LEDGER_SQL)) {
+                        compact.setLong(1, upTo);
+                        compact.setLong(2, upTo);
+                        compact.setLong(3, watermark);
+                        compact.setLong(4, upTo);
+                        advanced = compact.executeUpdate();
+                    }
+                }
+                connection.commit();
+                return advanced;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Ledger compaction failed", e);
+        }
+    }
+    
+    @Override
+    public synchronized List<String> verifyLedger() {
+        List<String> problems = new ArrayList<>();
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(VERIFY_BALANCES_SQL)) {
+                while (rs.next()) {
+                    problems.add("Account " + rs.getString(1) + ": balance " + rs.getDouble(2) 
+                            + ", ledger replay " + rs.getDouble(3));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery(VERIFY_TRANSFERS_SQL)) {
+                while (rs.next()) {
+                    problems.add("Transaction " + rs.getLong(1) + ": entries sum to " + rs.getDouble(2));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Ledger verification failed", e);
+        }
+        return problems;
+    }
+    
+    private List<Transaction> queryTransactions(String sql, String[] args) {
+        List<Transaction> transactions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                statement.setString(i + 1, args[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Transaction transaction = new Transaction();
+                    transaction.setTransactionId(rs.getInt(COLUMN_TRANS_ID));
+                    transaction.setFromCustomer(rs.getString(COLUMN_FROM_CUSTOMER));
+                    transaction.setToCustomer(rs.getString(COLUMN_TO_CUSTOMER));
+                    transaction.setAmount(rs.getDouble(COLUMN_AMOUNT));
+                    transaction.setTimestamp(rs.getString(COLUMN_TIMESTAMP));
+                    transaction.setStatus(rs.getString(COLUMN_STATUS));
+                    transactions.add(transaction);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("History query failed", e);
+        }
+        return transactions;
+    }
+    
+    /**
+     * Bulk-loads a synthetic ledger in one transaction using JDBC batches,
+     * with the history indexes and the summary and search triggers dropped
+     * during the load and everything rebuilt at the end.
+     */
+    public synchronized void seed(LedgerSeeder seeder) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement ddl = connection.createStatement();
+             PreparedStatement identifierTaken = connection.prepareStatement(IDENTIFIER_TAKEN_SQL);
+             PreparedStatement insertCustomer = connection.prepareStatement(INSERT_CUSTOMER_SQL);
+             PreparedStatement insertTransaction = connection.prepareStatement(INSERT_SEEDED_TRANSACTION_SQL)) {
+            ddl.execute("DROP INDEX IF EXISTS " + INDEX_TRANS_FROM);
+            ddl.execute("DROP INDEX IF EXISTS " + INDEX_TRANS_TO);
+            ddl.execute("DROP TRIGGER IF EXISTS " + TRIGGER_SUMMARIES);
+            ddl.execute("DROP TRIGGER IF EXISTS " + TRIGGER_OUTBOX);
+            for (String trigger : SEARCH_TRIGGERS) {
+                ddl.execute("DROP TRIGGER IF EXISTS " + trigger);
+            }
+            long lastCustomerId = longForQuery(MAX_CUSTOMER_ID_SQL);
+            
+            BatchingSink sink = new BatchingSink(identifierTaken, insertCustomer, insertTransaction);
+            seeder.generate(lastCustomerId, sink);
+            sink.flush();
+            
+            // Opening balances go into the ledger like on the device
+            try (PreparedStatement open = connection.prepareStatement(OPEN_ACCOUNTS_SQL);
+                 PreparedStatement clear = connection.prepareStatement(CLEAR_OPENED_BALANCES_SQL)) {
+                open.setLong(1, lastCustomerId);
+                open.executeUpdate();
+                clear.setLong(1, lastCustomerId);
+                clear.executeUpdate();
+            }
+            
+            for (String createIndex : CREATE_TRANSACTION_INDEXES) {
+                ddl.execute(createIndex);
+            }
+            ddl.execute("DELETE FROM " + TABLE_SUMMARIES);
+            ddl.execute(REBUILD_SUMMARIES_SQL);
+            ddl.execute(CREATE_SUMMARIES_TRIGGER);
+            ddl.execute(REBUILD_SEARCH_SQL);
+            for (String createTrigger : CREATE_SEARCH_TRIGGERS) {
+                ddl.execute(createTrigger);
+            }
+            ddl.execute(CREATE_OUTBOX_TRIGGER);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+    
+    /**
+     * Adds rows to JDBC batches and flushes them every {@link #BATCH_SIZE}
+     * rows. Identifier checks do not see unflushed customers, which is fine
+     * since the seeder never repeats its own identifiers.
+     */
+    private static class BatchingSink implements LedgerSeeder.RowSink {
+        private static final int BATCH_SIZE = 10000;
+        
+        private final PreparedStatement identifierTaken;
+        private final PreparedStatement insertCustomer;
+        private final PreparedStatement insertTransaction;
+        private int pendingCustomers;
+        private int pendingTransactions;
+        
+        BatchingSink(PreparedStatement identifierTaken, PreparedStatement insertCustomer, 
+                     PreparedStatement insertTransaction) {
+            this.identifierTaken = identifierTaken;
+            this.insertCustomer = insertCustomer;
+            this.insertTransaction = insertTransaction;
+        }
+        
+        @Override
+        public boolean isTaken(String identifier) {
+            try {
+                identifierTaken.setString(1, identifier);
+                identifierTaken.setString(2, identifier);
+                identifierTaken.setString(3, identifier);
+                try (ResultSet rs = identifierTaken.executeQuery()) {
+                    return rs.next() && rs.getLong(1) > 0;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Identifier check failed", e);
+            }
+        }
+        
+        @Override
+        public void customer(String name, String mobile, String accountNumber, String uniqueKey,
+                             String emailId, double balance, String unique10Digit) {
+            try {
+                insertCustomer.setString(1, name);
+                insertCustomer.setString(2, mobile);
+                insertCustomer.setString(3, accountNumber);
+                insertCustomer.setString(4, uniqueKey);
+                insertCustomer.setString(5, emailId);
+                insertCustomer.setDouble(6, balance);
+                insertCustomer.setString(7, unique10Digit);
+                insertCustomer.addBatch();
+                if (++pendingCustomers == BATCH_SIZE) {
+                    insertCustomer.executeBatch();
+                    pendingCustomers = 0;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Customer seed failed", e);
+            }
+        }
+        
+        @Override
+        public void transaction(String fromMobile, String toMobile, double amount, 
+                                String timestamp, String status) {
+            try {
+                if (pendingCustomers > 0) {
+                    // Customers must be in before the first transaction refers to them
+                    insertCustomer.executeBatch();
+                    pendingCustomers = 0;
+                }
+                insertTransaction.setString(1, fromMobile);
+                insertTransaction.setString(2, toMobile);
+                insertTransaction.setDouble(3, amount);
+                insertTransaction.setString(4, timestamp);
+                insertTransaction.setString(5, status);
+                insertTransaction.addBatch();
+                if (++pendingTransactions == BATCH_SIZE) {
+                    insertTransaction.executeBatch();
+                    pendingTransactions = 0;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Transaction seed failed", e);
+            }
+        }
+        
+        void flush() throws SQLException {
+            if (pendingCustomers > 0) {
+                insertCustomer.executeBatch();
+            }
+            if (pendingTransactions > 0) {
+                insertTransaction.executeBatch();
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws SQLException {
+        connection.close();
+    }
+}
+
+// LedgerSeeder.java
+package com.OnePay.paymentapp;
+
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic customers and transactions for load
+ * tests and benchmarks. The same seed, sizes and history end always
+ * produce the same ledger on the same starting table. Activity is skewed the way real
+ * payment traffic is: a few payees receive most transfers and a few senders
+ * make most of them.
+ *
+ * Seeded customers are numbered on from the table's highest customer id, so
+ * their mobiles and account numbers never meet the demo customers', earlier
+ * seeds' or registered ones'. Unique keys, email IDs and unique 10-digit
+ * numbers can still meet randomly issued older values, so each candidate
+ * the sink reports as taken is skipped for the next one in its sequence.
+ *
+ * Rows are pushed to a {@link RowSink}; DatabaseHelper and JdbcLedgerStore
+ * each provide one that writes through reused prepared statements.
+ */
+public class LedgerSeeder {
+    /** Receives generated rows in insertion order; customers always come first. */
+    public interface RowSink {
+        /** Whether any customer already uses {@code identifier} as a unique key, email ID or unique 10-digit number. */
+        boolean isTaken(String identifier);
+        
+        void customer(String name, String mobile, String accountNumber, String uniqueKey,
+                      String emailId, double balance, String unique10Digit);
+        
+        void transaction(String fromMobile, String toMobile, double amount, String timestamp, String status);
+    }
+    
+    // Synthetic mobiles are FIRST_MOBILE + index, clear of the demo customers for any realistic size
+    private static final long FIRST_MOBILE = 7000000000L;
+    private static final String KEY_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final long KEY_SPACE = 78364164096L; // 36^7
+    private static final long TEN_DIGIT_SPACE = 9000000000L;
+    // Multipliers coprime to their moduli, so index -> value is a bijection (collision-free)
+    private static final long UNIQUE_KEY_MULTIPLIER = 48271L;
+    private static final long EMAIL_KEY_MULTIPLIER = 16807L;
+    private static final long TEN_DIGIT_MULTIPLIER = 1000000007L;
+    // Higher exponent = more traffic concentrated on the lowest-ranked accounts
+    private static final double PAYEE_SKEW = 3.0;
+    private static final double SENDER_SKEW = 2.0;
+    private static final long HISTORY_SPAN_SECONDS = 365L * 24 * 60 * 60;
+    
+    private final long seed;
+    private final int customerCount;
+    private final int transactionCount;
+    private final long historyEndMillis;
+    
+    /**
+     * @param historyEndMillis epoch millis the generated history leads up to;
+     *                         transfers are spread over the year before it
+     */
+    public LedgerSeeder(long seed, int customerCount, int transactionCount, long historyEndMillis) {
+        if (customerCount < 2 && transactionCount > 0) {
+            throw new IllegalArgumentException("Transactions need at least two customers");
+        }
+        this.seed = seed;
+        this.customerCount = customerCount;
+        this.transactionCount = transactionCount;
+        this.historyEndMillis = historyEndMillis;
+    }
+    
+    public int getCustomerCount() { return customerCount; }
+    public int getTransactionCount() { return transactionCount; }
+    
+    /** @param firstIndex the table's highest customer id; seeded customers are numbered after it */
+    public void generate(long firstIndex, RowSink sink) {
+        Random random = new Random(seed);
+        
+        // Each identifier walks its own sequence, so a skip in one does not shift the others
+        long keyIndex = firstIndex;
+        long emailIndex = firstIndex;
+        long tenDigitIndex = firstIndex;
+        for (int i = 0; i < customerCount; i++) {
+            String uniqueKey;
+            do {
+                uniqueKey = base36Key(scramble(keyIndex++, UNIQUE_KEY_MULTIPLIER, KEY_SPACE));
+            } while (sink.isTaken(uniqueKey));
+            String emailId;
+            do {
+                emailId = base36Key(scramble(emailIndex++, EMAIL_KEY_MULTIPLIER, KEY_SPACE)) + "@OnePay.com";
+            } while (sink.isTaken(emailId));
+            String unique10Digit;
+            do {
+                unique10Digit = String.valueOf(1000000000L + scramble(tenDigitIndex++, TEN_DIGIT_MULTIPLIER, 
+                        TEN_DIGIT_SPACE));
+            } while (sink.isTaken(unique10Digit));
+            long index = firstIndex + i;
+            sink.customer("Customer " + index, mobile(index), "ACC" + pad6(index + 1), uniqueKey, emailId, 
+                    1000.0 + random.nextInt(100000), unique10Digit);
+        }
+        
+        // Timestamps rise evenly across the last year so history pages look real
+        long start = Math.floorDiv(historyEndMillis, 1000L) - HISTORY_SPAN_SECONDS;
+        start -= Math.floorMod(start, 86400L); // day-aligned so the output does not depend on the time of day
+        long step = transactionCount > 0 ? Math.max(1, HISTORY_SPAN_SECONDS / transactionCount) : 1;
+        StringBuilder timestamp = new StringBuilder(19);
+        for (int i = 0; i < transactionCount; i++) {
+            int sender = senderRank(skewed(random, SENDER_SKEW));
+            int payee = skewed(random, PAYEE_SKEW);
+            if (payee == sender) {
+                payee = (payee + 1) % customerCount;
+            }
+            double amount = (1 + random.nextInt(50000)) / 100.0;
+            formatTimestamp(start + i * step, timestamp);
+            sink.transaction(mobile(firstIndex + sender), mobile(firstIndex + payee), amount, 
+                    timestamp.toString(), "SUCCESS");
+        }
+    }
+    
+    static String mobile(long index) {
+        return String.valueOf(FIRST_MOBILE + index);
+    }
+    
+    /** Power-law pick: low indices are chosen far more often than high ones. */
+    private int skewed(Random random, double exponent) {
+        return (int) (customerCount * Math.pow(random.nextDouble(), exponent));
+    }
+    
+    /** Spreads sender ranks across the id space so hot senders are not also the hot payees. */
+    private int senderRank(int rank) {
+        return (int) ((rank * 7919L + customerCount / 2) % customerCount);
+    }
+    
+    private static long scramble(long index, long multiplier, long modulus) {
+        return (index * multiplier) % modulus;
+    }
+    
+    private static String base36Key(long value) {
+        char[] key = new char[7];
+        for (int i = 6; i >= 0; i--) {
+            key[i] = KEY_CHARS.charAt((int) (value % 36));
+            value /= 36;
+        }
+        return new String(key);
+    }
+    
+    private static String pad6(long value) {
+        String digits = String.valueOf(value);
+        return digits.length() >= 6 ? digits : "000000".substring(digits.length()) + digits;
+    }
+    
+    /** Formats epoch seconds (UTC) as SQLite's CURRENT_TIMESTAMP does, without allocating a formatter. */
+    private static void formatTimestamp(long epochSeconds, StringBuilder out) {
+        long days = Math.floorDiv(epochSeconds, 86400L);
+        long secondsOfDay = epochSeconds - days * 86400L;
+        // Civil-from-days (Howard Hinnant)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        
+        out.setLength(0);
+        out.append(year).append('-');
+        appendTwoDigits(out, month);
+        out.append('-');
+        appendTwoDigits(out, day);
+        out.append(' ');
+        appendTwoDigits(out, secondsOfDay / 3600);
+        out.append(':');
+        appendTwoDigits(out, (secondsOfDay / 60) % 60);
+        out.append(':');
+        appendTwoDigits(out, secondsOfDay % 60);
+    }
+    
+    private static void appendTwoDigits(StringBuilder out, long value) {
+        if (value < 10) {
+            out.append('0');
+        }
+        out.append(value);
+    }
+}
+
+// RecipientIndex.java
+package com.OnePay.paymentapp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory prefix index over customers' mobile numbers, email IDs and names
+ * for as-you-type recipient suggestions. Each field is a sorted array of row
+ * numbers searched by binary search, so a lookup costs O(log n + results).
+ * New customers land in a small unsorted tail that is merged into the sorted
+ * arrays once it grows past {@link #MAX_PENDING}.
+ *
+ * To stay small at a million customers, the text lives in one shared UTF-8
+ * byte pool instead of a String per field; keys are compared straight from
+ * the pool, lower-cased code point by code point, and Strings are only built
+ * for the customers a search returns.
+ */
+public class RecipientIndex {
+    private static final int MAX_PENDING = 4096;
+    private static final int NAME = 0;
+    private static final int MOBILE = 1;
+    private static final int EMAIL_ID = 2;
+    private static final int FIELDS = 3;
+    // Words starting further into a name than this are not indexed
+    private static final int MAX_WORD_OFFSET = 0xFFFF;
+    
+    // Row store: field f of row r is pool[fieldStarts[r * FIELDS + f], fieldStarts[r * FIELDS + f + 1])
+    private int size;
+    private int[] ids = new int[16];
+    private int[] fieldStarts = new int[16 * FIELDS + 1];
+    private byte[] pool = new byte[256];
+    private int poolSize;
+    
+    private final FieldIndex byMobile = new FieldIndex(MOBILE);
+    private final FieldIndex byEmailId = new FieldIndex(EMAIL_ID);
+    private final FieldIndex byName = new FieldIndex(NAME);
+    // While set, additions are only sorted once, by compact()
+    private boolean bulkLoading;
+    
+    /** Defers sorting until {@link #compact()}, for loading many customers at once. */
+    public synchronized void beginBulkLoad() {
+        bulkLoading = true;
+    }
+    
+    public synchronized void add(int id, String name, String mobile, String emailId) {
+        int row = size++;
+        if (row == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            fieldStarts = Arrays.copyOf(fieldStarts, capacity * FIELDS + 1);
+        }
+        ids[row] = id;
+        // Null fields are stored empty, which no prefix matches
+        append(row * FIELDS + NAME, name);
+        append(row * FIELDS + MOBILE, mobile);
+        append(row * FIELDS + EMAIL_ID, emailId);
+        fieldStarts[(row + 1) * FIELDS] = poolSize;
+        
+        if (mobile != null) byMobile.add(row, 0);
+        if (emailId != null) byEmailId.add(row, 0);
+        if (name != null) {
+            // Match on the full name and on every later word ("smith" finds "Jane Smith")
+            byName.add(row, 0);
+            int start = fieldStarts[row * FIELDS + NAME];
+            int end = fieldStarts[row * FIELDS + NAME + 1];
+            for (int i = start; i + 1 < end && i + 1 - start <= MAX_WORD_OFFSET; i++) {
+                if (pool[i] == ' ' && pool[i + 1] != ' ') {
+                    byName.add(row, i + 1 - start);
+                }
+            }
+        }
+    }
+    
+    private void append(int slot, String value) {
+        fieldStarts[slot] = poolSize;
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (poolSize + bytes.length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(poolSize + bytes.length, pool.length + (pool.length >> 1)));
+        }
+        System.arraycopy(bytes, 0, pool, poolSize, bytes.length);
+        poolSize += bytes.length;
+    }
+    
+    /** Adds a batch of new customers with one sort and merge instead of one per {@link #MAX_PENDING}. */
+    public synchronized void addAll(List<Customer> customers) {
+        boolean wasBulkLoading = bulkLoading;
+        bulkLoading = true;
+        for (Customer customer : customers) {
+            add(customer.getId(), customer.getName(), customer.getMobile(), customer.getEmailId());
+        }
+        if (!wasBulkLoading) {
+            compact();
+        }
+    }
+    
+    /** Sorts everything added so far and ends a bulk load. */
+    public synchronized void compact() {
+        if (bulkLoading) {
+            // A bulk load is usually the whole table; give back the growth slack
+            ids = Arrays.copyOf(ids, Math.max(size, 16));
+            fieldStarts = Arrays.copyOf(fieldStarts, Math.max(size, 16) * FIELDS + 1);
+            pool = Arrays.copyOf(pool, Math.max(poolSize, 256));
+        }
+        bulkLoading = false;
+        byMobile.merge();
+        byEmailId.merge();
+        byName.merge();
+    }
+    
+    /**
+     * Returns up to {@code limit} customers whose mobile, email ID or name
+     * starts with {@code prefix}, mobile matches first. Returned customers
+     * carry id, name, mobile and email ID only.
+     */
+    public synchronized List<Customer> search(String prefix, int limit) {
+        List<Customer> results = new ArrayList<>();
+        int[] key = lowerCodePoints(prefix.trim());
+        if (key.length == 0 || limit <= 0) {
+            return results;
+        }
+        Set<Integer> seen = new HashSet<>();
+        byMobile.collect(key, limit, seen, results);
+        byEmailId.collect(key, limit, seen, results);
+        byName.collect(key, limit, seen, results);
+        return results;
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    /** Approximate heap used by the index, in bytes, for diagnostics. */
+    public synchronized long estimateMemoryBytes() {
+        long bytes = 4L * ids.length + 4L * fieldStarts.length + pool.length;
+        return bytes + byMobile.estimateMemoryBytes() + byEmailId.estimateMemoryBytes()
+                + byName.estimateMemoryBytes();
+    }
+    
+    private static int[] lowerCodePoints(String value) {
+        int[] codePoints = value.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            codePoints[i] = Character.toLowerCase(codePoints[i]);
+        }
+        return codePoints;
+    }
+    
+    private Customer toCustomer(int row) {
+        Customer customer = new Customer();
+        customer.setId(ids[row]);
+        customer.setName(field(row, NAME));
+        customer.setMobile(field(row, MOBILE));
+        customer.setEmailId(field(row, EMAIL_ID));
+        return customer;
+    }
+    
+    private String field(int row, int field) {
+        int start = fieldStarts[row * FIELDS + field];
+        return new String(pool, start, fieldStarts[row * FIELDS + field + 1] - start, StandardCharsets.UTF_8);
+    }
+    
+    /** Length of the UTF-8 sequence starting with {@code lead}. */
+    private static int sequenceLength(byte lead) {
+        if (lead >= 0) return 1;
+        if ((lead & 0xE0) == 0xC0) return 2;
+        if ((lead & 0xF0) == 0xE0) return 3;
+        return 4;
+    }
+    
+    /** Lower-cased code point of the UTF-8 sequence at {@code i}. */
+    private int lowerCodePointAt(int i) {
+        byte lead = pool[i];
+        if (lead >= 0) {
+            return lead >= 'A' && lead <= 'Z' ? lead + ('a' - 'A') : lead;
+        }
+        int length = sequenceLength(lead);
+        int codePoint = lead & (0x7F >> length);
+        for (int k = 1; k < length; k++) {
+            codePoint = (codePoint << 6) | (pool[i + k] & 0x3F);
+        }
+        return Character.toLowerCase(codePoint);
+    }
+    
+    /**
+     * Sorted entries for one field plus an unsorted tail of recent additions.
+     * An entry is a row and, for names, the byte offset of the word the key
+     * starts at; the key runs from there to the end of the field.
+     */
+    private class FieldIndex {
+        private final int field;
+        private int[] rows = new int[0];
+        // Word offsets parallel to rows, only kept once some key starts past the field start
+        private char[] wordOffsets;
+        // Pending entries packed as row << 16 | word offset
+        private long[] pending = new long[16];
+        private int pendingCount;
+        
+        FieldIndex(int field) {
+            this.field = field;
+        }
+        
+        void add(int row, int wordOffset) {
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = (long) row << 16 | wordOffset;
+            if (!bulkLoading && pendingCount > MAX_PENDING) {
+                merge();
+            }
+        }
+        
+        private long entry(int i) {
+            return (long) rows[i] << 16 | (wordOffsets != null ? wordOffsets[i] : 0);
+        }
+        
+        private int keyStart(long entry) {
+            return fieldStarts[(int) (entry >>> 16) * FIELDS + field] + (int) (entry & MAX_WORD_OFFSET);
+        }
+        
+        private int keyEnd(long entry) {
+            return fieldStarts[(int) (entry >>> 16) * FIELDS + field + 1];
+        }
+        
+        /** Negative if the entry's key sorts before the prefix, 0 if it starts with it, positive after. */
+        private int compareToPrefix(long entry, int[] prefix) {
+            int i = keyStart(entry);
+            int end = keyEnd(entry);
+            for (int codePoint : prefix) {
+                if (i >= end) {
+                    return -1;
+                }
+                int cmp = Integer.compare(lowerCodePointAt(i), codePoint);
+                if (cmp != 0) {
+                    return cmp;
+                }
+                i += sequenceLength(pool[i]);
+            }
+            return 0;
+        }
+        
+        private int compareEntries(long a, long b) {
+            int i = keyStart(a);
+            int iEnd = keyEnd(a);
+            int j = keyStart(b);
+            int jEnd = keyEnd(b);
+            while (i < iEnd && j < jEnd) {
+                int cmp = Integer.compare(lowerCodePointAt(i), lowerCodePointAt(j));
+                if (cmp != 0) {
+                    return cmp;
+                }
+                i += sequenceLength(pool[i]);
+                j += sequenceLength(pool[j]);
+            }
+            return Integer.compare(iEnd - i, jEnd - j);
+        }
+        
+        void collect(int[] prefix, int limit, Set<Integer> seen, List<Customer> out) {
+            for (int i = lowerBound(prefix); i < rows.length && out.size() < limit
+                    && compareToPrefix(entry(i), prefix) == 0; i++) {
+                if (seen.add(rows[i])) {
+                    out.add(toCustomer(rows[i]));
+                }
+            }
+            for (int i = 0; i < pendingCount && out.size() < limit; i++) {
+                int row = (int) (pending[i] >>> 16);
+                if (compareToPrefix(pending[i], prefix) == 0 && seen.add(row)) {
+                    out.add(toCustomer(row));
+                }
+            }
+        }
+        
+        private int lowerBound(int[] prefix) {
+            int low = 0;
+            int high = rows.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareToPrefix(entry(mid), prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+        void merge() {
+            if (pendingCount == 0) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(pending, pendingCount);
+            sort(sorted, new long[sorted.length], 0, sorted.length);
+            
+            // Linear merge of the sorted tail into the sorted arrays
+            int[] mergedRows = new int[rows.length + sorted.length];
+            char[] mergedOffsets = new char[mergedRows.length];
+            boolean anyOffset = wordOffsets != null;
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < mergedRows.length; k++) {
+                long next;
+                if (j >= sorted.length || (i < rows.length && compareEntries(entry(i), sorted[j]) <= 0)) {
+                    next = entry(i++);
+                } else {
+                    next = sorted[j++];
+                }
+                mergedRows[k] = (int) (next >>> 16);
+                mergedOffsets[k] = (char) (next & MAX_WORD_OFFSET);
+                anyOffset |= mergedOffsets[k] != 0;
+            }
+            rows = mergedRows;
+            wordOffsets = anyOffset ? mergedOffsets : null;
+            pending = new long[16];
+            pendingCount = 0;
+        }
+        
+        /** Stable merge sort of entries[from, to) by key, using scratch of the same length. */
+        private void sort(long[] entries, long[] scratch, int from, int to) {
+            if (to - from < 16) {
+                for (int i = from + 1; i < to; i++) {
+                    long entry = entries[i];
+                    int j = i;
+                    while (j > from && compareEntries(entries[j - 1], entry) > 0) {
+                        entries[j] = entries[j - 1];
+                        j--;
+                    }
+                    entries[j] = entry;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort(entries, scratch, from, mid);
+            sort(entries, scratch, mid, to);
+            if (compareEntries(entries[mid - 1], entries[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(entries, from, scratch, from, to - from);
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                if (j >= to || (i < mid && compareEntries(scratch[i], scratch[j]) <= 0)) {
+                    entries[k] = scratch[i++];
+                } else {
+                    entries[k] = scratch[j++];
+                }
+            }
+        }
+        
+        long estimateMemoryBytes() {
+            return 4L * rows.length + (wordOffsets != null ? 2L * wordOffsets.length : 0) + 8L * pending.length;
+        }
+    }
+}
+
+// RecipientSuggestionAdapter.java
+package com.OnePay.paymentapp;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drop-down suggestions for the recipient field. Filtering runs on the
+ * framework's filter thread, which is also where the index is built on first
+ * use; picking a suggestion fills in the customer's mobile number.
+ */
+public class RecipientSuggestionAdapter extends BaseAdapter implements Filterable {
+    private static final int MAX_SUGGESTIONS = 8;
+    
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+    private List<Customer> suggestions = new ArrayList<>();
+    
+    public RecipientSuggestionAdapter(Context context, DatabaseHelper dbHelper) {
+        this.context = context;
+        this.dbHelper = dbHelper;
+    }
+    
+    @Override
+    public int getCount() {
+        return suggestions.size();
+    }
+    
+    @Override
+    public Object getItem(int position) {
+        return suggestions.get(position);
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return suggestions.get(position).getId();
+    }
+    
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        if (convertView == null) {
+            convertView = LayoutInflater.from(context)
+                    .inflate(android.R.layout.simple_dropdown_item_1line, parent, false);
+        }
+        Customer customer = suggestions.get(position);
+        TextView textView = convertView.findViewById(android.R.id.text1);
+        textView.setText(customer.getName() + " (" + customer.getMobile() + ")");
+        return convertView;
+    }
+    
+    @Override
+    public Filter getFilter() {
+        return new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence constraint) {
+                FilterResults results = new FilterResults();
+                List<Customer> matches = constraint == null 
+                        ? new ArrayList<Customer>() 
+                        : dbHelper.getRecipientIndex().search(constraint.toString(), MAX_SUGGESTIONS);
+                results.values = matches;
+                results.count = matches.size();
+                return results;
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void publishResults(CharSequence constraint, FilterResults results) {
+                suggestions = results.values != null 
+                        ? (List<Customer>) results.values : new ArrayList<Customer>();
+                if (results.count > 0) {
+                    notifyDataSetChanged();
+                } else {
+                    notifyDataSetInvalidated();
+                }
+            }
+            
+            @Override
+            public CharSequence convertResultToString(Object resultValue) {
+                return ((Customer) resultValue).getMobile();
+            }
+        };
+    }
+}
+
+// TransferService.java
+package com.OnePay.paymentapp;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders transfers per account instead of through one global lock. Every
+ * account maps to one of a fixed set of lock stripes and a transfer holds
+ * the stripes of both of its accounts, always taken lowest index first, so
+ * two transfers can never wait on each other in a cycle. Transfers between
+ * disjoint accounts run side by side and only meet at the store's write
+ * lock for their short append.
+ */
+public class TransferService {
+    private static final int DEFAULT_STRIPES = 64;
+    
+    private final LedgerStore store;
+    private final ReentrantLock[] stripes;
+    
+    public TransferService(LedgerStore store) {
+        this(store, DEFAULT_STRIPES);
+    }
+    
+    public TransferService(LedgerStore store, int stripeCount) {
+        this.store = store;
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * Safe to call from many threads at once.
+     *
+     * @return the id of the recorded transaction, or -1 if nothing was changed
+     */
+    public long transfer(String fromMobile, String toMobile, double amount) {
+        if (amount <= 0 || fromMobile.equals(toMobile)) {
+            return -1;
+        }
+        
+        int first = stripeFor(fromMobile);
+        int second = stripeFor(toMobile);
+        if (first > second) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        
+        stripes[first].lock();
+        try {
+            if (second != first) {
+                stripes[second].lock();
+            }
+            try {
+                // Rejects on a reader connection without queueing for the
+                // write lock; the store checks again inside its transaction
+                Customer sender = store.getCustomerByMobile(fromMobile);
+                if (sender == null || sender.getBalance() < amount) {
+                    return -1;
+                }
+                return store.transfer(fromMobile, toMobile, amount);
+            } finally {
+                if (second != first) {
+                    stripes[second].unlock();
+                }
+            }
+        } finally {
+            stripes[first].unlock();
+        }
+    }
+    
+    private int stripeFor(String mobile) {
+        int hash = mobile.hashCode();
+        // Mix the high bits in; neighbouring mobiles differ mostly in the low digits
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+}
+
+// PaymentRepository.java
+package com.OnePay.paymentapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs DatabaseHelper calls off the main thread. Single transfers go
+ * through TransferService on a pool sized to the cores, so senders on
+ * unrelated accounts do not queue behind each other. Other writes go
+ * through a single thread so they never contend with each other for the
+ * database lock, and reads use a small separate pool so a history query
+ * never waits behind a transfer. Results are delivered to the main thread.
+ */
+public class PaymentRepository {
+    private static final int READER_THREADS = 2;
+    private static final int MAX_QUEUED_WRITES = 64;
+    private static final int MAX_QUEUED_TRANSFERS = 64;
+    private static final int MAX_QUEUED_READS = 128;
+    // Ledger entries are folded into balance snapshots after this many write calls
+    private static final int WRITES_PER_COMPACTION = 200;
+    private static final int SYNC_BATCH_SIZE = 100;
+    private static final int SYNC_MAX_IN_FLIGHT = 2;
+    
+    public interface Callback<T> {
+        /** Called on the main thread with either a result or the error that prevented one. */
+        void onComplete(T result, Exception error);
+    }
+    
+    private static PaymentRepository instance;
+    
+    private final DatabaseHelper dbHelper;
+    private final TransferService transferService;
+    private final ExecutorService transferExecutor;
+    private final ExecutorService writeExecutor;
+    private final ExecutorService readExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger writesSinceCompaction = new AtomicInteger();
+    // Null until startSync(); transfers then wake it after they commit
+    private volatile OutboxSync outboxSync;
+    
+    public static synchronized PaymentRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PaymentRepository(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+    
+    private PaymentRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.transferService = new TransferService(dbHelper);
+        int transferThreads = Runtime.getRuntime().availableProcessors();
+        this.transferExecutor = new ThreadPoolExecutor(transferThreads, transferThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED_TRANSFERS), new NamedThreadFactory("OnePay-transfer"));
+        this.writeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED_WRITES), new NamedThreadFactory("OnePay-db-write"));
+        this.readExecutor = new ThreadPoolExecutor(READER_THREADS, READER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED_READS), new NamedThreadFactory("OnePay-db-read"));
+    }
+    
+    /**
+     * Starts sending committed transfers to the core ledger, beginning with
+     * any left in the outbox from earlier runs. Later calls do nothing.
+     */
+    public synchronized void startSync(OutboxSync.Transport transport, String deviceId) {
+        if (outboxSync == null) {
+            outboxSync = new OutboxSync(dbHelper, transport, deviceId, SYNC_BATCH_SIZE, SYNC_MAX_IN_FLIGHT);
+            outboxSync.requestSync();
+        }
+    }
+    
+    private void requestSync() {
+        OutboxSync sync = outboxSync;
+        if (sync != null) {
+            sync.requestSync();
+        }
+    }
+    
+    /** Opens the database (and creates it on first run) on the write thread. */
+    public Future<Void> warmUp() {
+        return submit(writeExecutor, () -> {
+            dbHelper.getWritableDatabase();
+            return null;
+        }, null);
+    }
+    
+    /**
+     * Calls {@code listener} on the main thread whenever a write changes the
+     * balance or history of {@code mobile}. Bursts of writes arrive as one call.
+     */
+    public void addCustomerListener(String mobile, ChangeTracker.Listener listener) {
+        dbHelper.getChangeTracker().subscribe(mobile, listener);
+    }
+    
+    public void removeCustomerListener(String mobile, ChangeTracker.Listener listener) {
+        dbHelper.getChangeTracker().unsubscribe(mobile, listener);
+    }
+    
+    /** Resolves a recipient typed as either a mobile number or an @OnePay.com email ID. */
+    public Future<Customer> findRecipient(String recipient, Callback<Customer> callback) {
+        return submit(readExecutor, () -> recipient.contains("@OnePay.com")
+                ? dbHelper.getCustomerByEmailId(recipient)
+                : dbHelper.getCustomerByMobile(recipient), callback);
+    }
+    
+    public Future<Customer> resolveQrPayee(QrPayload payload, Callback<Customer> callback) {
+        return submit(readExecutor, () -> dbHelper.resolveQrPayee(payload), callback);
+    }
+    
+    public Future<Customer> getCustomerByMobile(String mobile, Callback<Customer> callback) {
+        return submit(readExecutor, () -> dbHelper.getCustomerByMobile(mobile), callback);
+    }
+    
+    public Future<Long> transfer(String fromMobile, String toMobile, double amount, 
+                                 Callback<Long> callback) {
+        Future<Long> result = submit(transferExecutor, () -> {
+            long transactionId = transferService.transfer(fromMobile, toMobile, amount);
+            if (transactionId != -1) {
+                requestSync();
+            }
+            return transactionId;
+        }, callback);
+        onWriteSubmitted();
+        return result;
+    }
+    
+    public Future<long[]> bulkTransfer(List<TransferRequest> requests, Callback<long[]> callback) {
+        Future<long[]> result = submit(writeExecutor, () -> {
+            long[] transactionIds = dbHelper.bulkTransfer(requests);
+            requestSync();
+            return transactionIds;
+        }, callback);
+        onWriteSubmitted();
+        return result;
+    }
+    
+    public Future<List<Customer>> registerCustomers(List<CustomerRegistration> registrations, 
+                                                    Callback<List<Customer>> callback) {
+        Future<List<Customer>> result = submit(writeExecutor, 
+                () -> dbHelper.registerCustomers(registrations), callback);
+        onWriteSubmitted();
+        return result;
+    }
+    
+    public Future<List<ActivitySummary>> getActivitySummaries(String mobile, String period, String fromBucket,
+                                                             String toBucket, Callback<List<ActivitySummary>> callback) {
+        return submit(readExecutor, 
+                () -> dbHelper.getActivitySummaries(mobile, period, fromBucket, toBucket), callback);
+    }
+    
+    public Future<ActivitySummary> getCurrentMonthSummary(String mobile, Callback<ActivitySummary> callback) {
+        return submit(readExecutor, () -> dbHelper.getCurrentMonthSummary(mobile), callback);
+    }
+    
+    // Chat reads share the write thread with chat saves, so a load always
+    // sees every message saved before it was requested. Both are small.
+    public void saveChatMessage(String mobile, ChatEntry entry, Callback<Void> callback) {
+        submit(writeExecutor, () -> {
+            dbHelper.addChatMessage(mobile, entry);
+            return null;
+        }, callback);
+    }
+    
+    public Future<List<ChatEntry>> getChatMessages(String mobile, long anchorSeq, boolean newer, int limit,
+                                                   Callback<List<ChatEntry>> callback) {
+        return submit(writeExecutor, 
+                () -> dbHelper.getChatMessages(mobile, anchorSeq, newer, limit), callback);
+    }
+    
+    public Future<Integer> compactLedger(Callback<Integer> callback) {
+        return submit(writeExecutor, dbHelper::compactLedger, callback);
+    }
+    
+    /** Replays the whole ledger on a read thread; slow on large ledgers. */
+    public Future<List<String>> verifyLedger(Callback<List<String>> callback) {
+        return submit(readExecutor, dbHelper::verifyLedger, callback);
+    }
+    
+    private void onWriteSubmitted() {
+        // Compaction changes no balance, so it may run alongside transfers
+        if (writesSinceCompaction.incrementAndGet() >= WRITES_PER_COMPACTION) {
+            writesSinceCompaction.set(0);
+            compactLedger(null);
+        }
+    }
+    
+    public Future<List<Transaction>> getTransactionHistoryPage(String customerMobile, Transaction olderThan, 
+                                                              int limit, Callback<List<Transaction>> callback) {
+        return submit(readExecutor, 
+                () -> dbHelper.getTransactionHistoryPage(customerMobile, olderThan, limit), callback);
+    }
+    
+    public Future<List<Transaction>> searchTransactionHistory(TransactionSearch search, Transaction olderThan, 
+                                                              int limit, Callback<List<Transaction>> callback) {
+        return submit(readExecutor, 
+                () -> dbHelper.searchTransactionHistory(search, olderThan, limit), callback);
+    }
+    
+    /**
+     * Writes a statement on a read thread. The exporter's progress listener
+     * runs on that thread too; only the final row count comes back on the
+     * main thread.
+     */
+    public Future<Long> exportTransactionHistory(String customerMobile, String fromDate, String toDate, 
+                                                 HistoryExporter exporter, Callback<Long> callback) {
+        return submit(readExecutor, 
+                () -> dbHelper.exportTransactionHistory(customerMobile, fromDate, toDate, exporter), callback);
+    }
+    
+    public Future<List<Transaction>> getNewerTransactionHistoryPage(String customerMobile, Transaction newerThan,
+                                                                   int limit, Callback<List<Transaction>> callback) {
+        return submit(readExecutor, 
+                () -> dbHelper.getNewerTransactionHistoryPage(customerMobile, newerThan, limit), callback);
+    }
+    
+    private <T> Future<T> submit(ExecutorService executor, Callable<T> work, Callback<T> callback) {
+        FutureTask<T> task = new FutureTask<T>(work) {
+            @Override
+            protected void done() {
+                if (callback == null || isCancelled()) {
+                    return;
+                }
+                T result = null;
+                Exception error = null;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    error = e;
+                }
+                deliver(callback, result, error);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            // Queue full: report it instead of running the work on the caller's thread
+            if (callback != null) {
+                deliver(callback, null, e);
+            }
+        }
+        return task;
+    }
+    
+    private <T> void deliver(Callback<T> callback, T result, Exception error) {
+        mainHandler.post(() -> callback.onComplete(result, error));
+    }
+    
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+        
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
+
+// OutboxEntry.java
+package com.OnePay.paymentapp;
+
+/** A committed transfer waiting in the outbox to be sent to the core ledger. */
+public class OutboxEntry {
+    private final long transactionId;
+    private final String fromCustomer;
+    private final String toCustomer;
+    private final double amount;
+    private final String timestamp;
+    private final int attempts;
+    
+    public OutboxEntry(long transactionId, String fromCustomer, String toCustomer, 
+                       double amount, String timestamp, int attempts) {
+        this.transactionId = transactionId;
+        this.fromCustomer = fromCustomer;
+        this.toCustomer = toCustomer;
+        this.amount = amount;
+        this.timestamp = timestamp;
+        this.attempts = attempts;
+    }
+    
+    public long getTransactionId() { return transactionId; }
+    public String getFromCustomer() { return fromCustomer; }
+    public String getToCustomer() { return toCustomer; }
+    public double getAmount() { return amount; }
+    public String getTimestamp() { return timestamp; }
+    /** Failed sends so far, which sets how long the next retry waits. */
+    public int getAttempts() { return attempts; }
+}
+
+// OutboxSync.java
+package com.OnePay.paymentapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends outbox entries to the core banking ledger. Entries are claimed in
+ * batches, encoded as gzipped JSON Lines and posted with at most
+ * {@code maxInFlight} requests open at once. Every entry carries an
+ * idempotency key of the device id and transaction id, which stays the
+ * same across retries, so the backend can drop duplicates when an
+ * acknowledgement is lost.
+ *
+ * A 2xx response deletes the batch. Network errors, 408, 429 and 5xx
+ * leave it queued with an exponential, jittered backoff, and pause all
+ * sending until then. Any other status marks it rejected so it stops
+ * blocking the queue. If the store itself fails while looking for work,
+ * the worker logs it and tries again after the same kind of backoff; if it
+ * fails while recording a response, the batch is retried as after a
+ * network error, and the idempotency keys cover a repeated delivery.
+ * Work still queued at shutdown() is dropped and stays in the outbox.
+ * Plain Java, so the worker can run on a desktop JVM against
+ * JdbcLedgerStore and a local server.
+ */
+public class OutboxSync {
+    // A claimed batch comes due again after this long if the process dies mid-send
+    private static final long LEASE_MS = 60_000;
+    private static final long BASE_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 15 * 60_000;
+    private static final Logger LOG = Logger.getLogger(OutboxSync.class.getName());
+    
+    private static final DbMetrics.Timer POST_TIMER = DbMetrics.timer("outbox.post");
+    private static final DbMetrics.Counter SENT = DbMetrics.counter("outbox.sent");
+    private static final DbMetrics.Counter RETRIED = DbMetrics.counter("outbox.retried");
+    private static final DbMetrics.Counter REJECTED = DbMetrics.counter("outbox.rejected");
+    
+    public interface Transport {
+        /** Posts one gzipped JSON Lines batch; @return the HTTP status */
+        int post(String batchKey, byte[] body) throws IOException;
+    }
+    
+    /** Posts batches to a fixed endpoint with HttpURLConnection. */
+    public static class HttpTransport implements Transport {
+        private static final int CONNECT_TIMEOUT_MS = 10_000;
+        private static final int READ_TIMEOUT_MS = 30_000;
+        
+        private final URL endpoint;
+        
+        public HttpTransport(URL endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        @Override
+        public int post(String batchKey, byte[] body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            try {
+                connection.setRequestMethod("POST");
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                connection.setRequestProperty("Content-Type", "application/x-ndjson");
+                connection.setRequestProperty("Content-Encoding", "gzip");
+                connection.setRequestProperty("Idempotency-Key", batchKey);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                int status = connection.getResponseCode();
+                // Drain the body so the connection can be reused for the next batch
+                InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (in != null) {
+                    byte[] skip = new byte[1024];
+                    while (in.read(skip) != -1) {
+                        // Discarded
+                    }
+                    in.close();
+                }
+                return status;
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+    
+    private final LedgerStore store;
+    private final Transport transport;
+    private final String deviceId;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService senders;
+    private final Random jitter = new Random();
+    // Set while a drain is queued, so a burst of requestSync() calls queues one
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private volatile boolean shutDown;
+    
+    // Only touched on the scheduler thread
+    private int inFlight;
+    private long pausedUntil;
+    private int storeFailures;
+    private ScheduledFuture<?> wakeUp;
+    
+    public OutboxSync(LedgerStore store, Transport transport, String deviceId, int batchSize, int maxInFlight) {
+        this.store = store;
+        this.transport = transport;
+        this.deviceId = deviceId;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("OnePay-sync"));
+        this.senders = Executors.newFixedThreadPool(maxInFlight, new DaemonThreadFactory("OnePay-sync-send"));
+    }
+    
+    /** Sends whatever is due as soon as possible; cheap to call after every transfer. */
+    public void requestSync() {
+        if (drainQueued.compareAndSet(false, true)) {
+            onScheduler(() -> {
+                drainQueued.set(false);
+                drain();
+            });
+        }
+    }
+    
+    public void shutdown() {
+        shutDown = true;
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+    
+    /** Runs the task on the scheduler thread, or drops it once the worker is shut down. */
+    private void onScheduler(Runnable task) {
+        if (shutDown) {
+            return;
+        }
+        try {
+            scheduler.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shutdown() ran since the check; claimed entries come due again when their lease runs out
+        }
+    }
+    
+    private void drain() {
+        if (shutDown) {
+            return;
+        }
+        try {
+            claimDue();
+            storeFailures = 0;
+        } catch (RuntimeException e) {
+            if (shutDown) {
+                // Rejected by the stopped executors, or a store closed along with the worker
+                return;
+            }
+            // Locked, full or closed database; a drain that throws would never be scheduled again
+            long delay = backoffDelay(storeFailures++);
+            LOG.log(Level.WARNING, "Could not read the outbox, retrying in " + delay + " ms", e);
+            scheduleWakeUp(System.currentTimeMillis() + delay);
+        }
+    }
+    
+    private void claimDue() {
+        long now = System.currentTimeMillis();
+        if (now < pausedUntil) {
+            scheduleWakeUp(pausedUntil);
+            return;
+        }
+        while (inFlight < maxInFlight) {
+            List<OutboxEntry> batch = store.claimOutboxBatch(now, LEASE_MS, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            inFlight++;
+            senders.execute(() -> send(batch));
+        }
+        if (inFlight == 0) {
+            long due = store.nextOutboxAttemptAt();
+            if (due >= 0) {
+                scheduleWakeUp(due);
+            }
+        }
+    }
+    
+    private void send(List<OutboxEntry> batch) {
+        long retryAt = 0;
+        long started = POST_TIMER.start();
+        try {
+            int status = transport.post(batchKey(batch), encode(batch));
+            if (status >= 200 && status < 300) {
+                store.acknowledgeOutbox(batch);
+                SENT.add(batch.size());
+            } else if (status == 408 || status == 429 || status >= 500) {
+                retryAt = retry(batch);
+            } else {
+                store.rejectOutbox(batch);
+                REJECTED.add(batch.size());
+            }
+        } catch (IOException e) {
+            retryAt = retry(batch);
+        } catch (RuntimeException e) {
+            // The store could not record the response; the backend drops the repeat by its keys
+            LOG.log(Level.WARNING, "Could not record an outbox response, retrying the batch", e);
+            retryAt = retry(batch);
+        } finally {
+            POST_TIMER.stop(started, batch.size());
+            long pauseUntil = retryAt;
+            onScheduler(() -> {
+                inFlight--;
+                // One failure is taken as the backend being unwell, so nothing else goes out before the retry
+                pausedUntil = Math.max(pausedUntil, pauseUntil);
+                drain();
+            });
+        }
+    }
+    
+    private long retry(List<OutboxEntry> batch) {
+        int attempts = 0;
+        for (OutboxEntry entry : batch) {
+            attempts = Math.max(attempts, entry.getAttempts());
+        }
+        long retryAt = System.currentTimeMillis() + backoffDelay(attempts);
+        try {
+            store.retryOutbox(batch, retryAt);
+            RETRIED.add(batch.size());
+        } catch (RuntimeException e) {
+            // The claim still lapses after LEASE_MS, and the batch comes due again then
+            LOG.log(Level.WARNING, "Could not reschedule an outbox batch", e);
+        }
+        return retryAt;
+    }
+    
+    private long backoffDelay(int attempts) {
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts, 20));
+        // Full jitter in the upper half, so devices that failed together do not retry together
+        return backoff / 2 + (long) (jitter.nextDouble() * (backoff / 2));
+    }
+    
+    private void scheduleWakeUp(long at) {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        long delay = Math.max(0, at - System.currentTimeMillis());
+        wakeUp = scheduler.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private String batchKey(List<OutboxEntry> batch) {
+        return deviceId + ":" + batch.get(0).getTransactionId() + "-" 
+                + batch.get(batch.size() - 1).getTransactionId() + ":" + batch.size();
+    }
+    
+    byte[] encode(List<OutboxEntry> batch) throws IOException {
+        StringBuilder lines = new StringBuilder(batch.size() * 160);
+        for (OutboxEntry entry : batch) {
+            lines.append("{\"idempotency_key\":");
+            HistoryExporter.appendJson(lines, deviceId + ":" + entry.getTransactionId());
+            lines.append(",\"transaction_id\":").append(entry.getTransactionId());
+            lines.append(",\"from_customer\":");
+            HistoryExporter.appendJson(lines, entry.getFromCustomer());
+            lines.append(",\"to_customer\":");
+            HistoryExporter.appendJson(lines, entry.getToCustomer());
+            lines.append(",\"amount\":").append(entry.getAmount());
+            lines.append(",\"timestamp\":");
+            HistoryExporter.appendJson(lines, entry.getTimestamp());
+            lines.append("}\n");
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(lines.length() / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return body.toByteArray();
+    }
+    
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+        
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
+
+// CustomerCache.java
+package com.OnePay.paymentapp;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU cache of customers, addressable by mobile, email ID or
+ * unique 10-digit number. Entries are copied on the way in and out so callers
+ * can mutate what they get back without touching the cache.
+ *
+ * Writers call {@link #updateBalance} or {@link #invalidate}; both bump a
+ * version so that a lookup racing with a write cannot put a stale row back.
+ */
+public class CustomerCache {
+    private final int maxSize;
+    private final LinkedHashMap<String, Customer> byMobile;
+    private final Map<String, String> mobileByEmailId = new HashMap<>();
+    private final Map<String, String> mobileByUnique10Digit = new HashMap<>();
+    
+    private long version;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    
+    public CustomerCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.byMobile = new LinkedHashMap<String, Customer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Customer> eldest) {
+                if (size() <= CustomerCache.this.maxSize) {
+                    return false;
+                }
+                removeAliases(eldest.getValue());
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+    
+    public synchronized Customer getByMobile(String mobile) {
+        return lookup(mobile);
+    }
+    
+    public synchronized Customer getByEmailId(String emailId) {
+        return lookup(mobileByEmailId.get(emailId));
+    }
+    
+    public synchronized Customer getByUnique10Digit(String unique10Digit) {
+        return lookup(mobileByUnique10Digit.get(unique10Digit));
+    }
+    
+    private Customer lookup(String mobile) {
+        Customer customer = mobile != null ? byMobile.get(mobile) : null;
+        if (customer == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return new Customer(customer);
+    }
+    
+    /** Returns the version to pass to {@link #put} for a lookup about to hit the database. */
+    public synchronized long version() {
+        return version;
+    }
+    
+    /** Caches a freshly read customer unless a write happened since {@code readVersion}. */
+    public synchronized void put(Customer customer, long readVersion) {
+        if (readVersion != version || customer.getMobile() == null) {
+            return;
+        }
+        Customer previous = byMobile.put(customer.getMobile(), new Customer(customer));
+        if (previous != null) {
+            removeAliases(previous);
+        }
+        if (customer.getEmailId() != null) {
+            mobileByEmailId.put(customer.getEmailId(), customer.getMobile());
+        }
+        if (customer.getUnique10Digit() != null) {
+            mobileByUnique10Digit.put(customer.getUnique10Digit(), customer.getMobile());
+        }
+    }
+    
+    public synchronized void updateBalance(String mobile, double newBalance) {
+        version++;
+        Customer customer = byMobile.get(mobile);
+        if (customer != null) {
+            customer.setBalance(newBalance);
+        }
+    }
+    
+    public synchronized void invalidate(String mobile) {
+        version++;
+        Customer customer = byMobile.remove(mobile);
+        if (customer != null) {
+            removeAliases(customer);
+        }
+    }
+    
+    public synchronized void clear() {
+        version++;
+        byMobile.clear();
+        mobileByEmailId.clear();
+        mobileByUnique10Digit.clear();
+    }
+    
+    private void removeAliases(Customer customer) {
+        String mobile = customer.getMobile();
+        if (customer.getEmailId() != null && mobile.equals(mobileByEmailId.get(customer.getEmailId()))) {
+            mobileByEmailId.remove(customer.getEmailId());
+        }
+        if (customer.getUnique10Digit() != null 
+                && mobile.equals(mobileByUnique10Digit.get(customer.getUnique10Digit()))) {
+            mobileByUnique10Digit.remove(customer.getUnique10Digit());
+        }
+    }
+    
+    public synchronized int size() { return byMobile.size(); }
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized long getEvictionCount() { return evictionCount; }
+    
+    @Override
+    public synchronized String toString() {
+        return "CustomerCache[size=" + byMobile.size() + "/" + maxSize + ", hits=" + hitCount 
+                + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+    }
+}
+
+// ChangeTracker.java
+package com.OnePay.paymentapp;
+
+import android.os.Handler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells screens which customers' balances and histories changed, so they
+ * re-query only those accounts instead of trusting a copy taken earlier.
+ * DatabaseHelper publishes after each committed write, from any thread.
+ * Changes are held for a short window and delivered on the handler's
+ * thread, so a burst of writes reaches each listener as one event
+ * carrying everything that changed in the burst.
+ */
+public class ChangeTracker {
+    public static final int BALANCE = 1;
+    public static final int HISTORY = 2;
+    // Writes landing within this long of the first pending one are delivered together
+    private static final long COALESCE_WINDOW_MS = 100;
+    
+    public interface Listener {
+        /** @param changes the {@link #BALANCE} and {@link #HISTORY} bits that changed */
+        void onCustomerChanged(String mobile, int changes);
+    }
+    
+    private final Handler handler;
+    private final Map<String, List<Listener>> listeners = new HashMap<>();
+    private Map<String, Integer> pending = new HashMap<>();
+    private boolean flushScheduled;
+    private final Runnable flush = this::flush;
+    
+    public ChangeTracker(Handler handler) {
+        this.handler = handler;
+    }
+    
+    public synchronized void subscribe(String mobile, Listener listener) {
+        List<Listener> forMobile = listeners.get(mobile);
+        if (forMobile == null) {
+            forMobile = new CopyOnWriteArrayList<>();
+            listeners.put(mobile, forMobile);
+        }
+        forMobile.add(listener);
+    }
+    
+    public synchronized void unsubscribe(String mobile, Listener listener) {
+        List<Listener> forMobile = listeners.get(mobile);
+        if (forMobile != null && forMobile.remove(listener) && forMobile.isEmpty()) {
+            listeners.remove(mobile);
+        }
+    }
+    
+    /** Records a committed change; accounts nobody is watching are dropped here. */
+    public synchronized void publish(String mobile, int changes) {
+        if (!listeners.containsKey(mobile)) {
+            return;
+        }
+        Integer previous = pending.get(mobile);
+        pending.put(mobile, previous != null ? previous | changes : changes);
+        scheduleFlush();
+    }
+    
+    /** For writes too broad to list, such as a bulk load: every watched account changed. */
+    public synchronized void publishAll(int changes) {
+        for (String mobile : listeners.keySet()) {
+            publish(mobile, changes);
+        }
+    }
+    
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flush, COALESCE_WINDOW_MS);
+        }
+    }
+    
+    private void flush() {
+        Map<String, Integer> changed;
+        List<List<Listener>> targets = new ArrayList<>();
+        synchronized (this) {
+            changed = pending;
+            pending = new HashMap<>();
+            flushScheduled = false;
+            for (String mobile : changed.keySet()) {
+                targets.add(listeners.get(mobile));
+            }
+        }
+        // Listeners run outside the lock so they can re-query or unsubscribe
+        int i = 0;
+        for (Map.Entry<String, Integer> change : changed.entrySet()) {
+            List<Listener> forMobile = targets.get(i++);
+            if (forMobile == null) {
+                continue;
+            }
+            for (Listener listener : forMobile) {
+                listener.onCustomerChanged(change.getKey(), change.getValue());
+            }
+        }
+    }
+}
+
+// Customer.java
+package com.OnePay.paymentapp;
+
+public class Customer {
+    private int id;
+    private String name;
+    private String mobile;
+    private String accountNumber;
+    private String uniqueKey;
+    private String emailId;
+    private double balance;
+    private String unique10Digit;
+    
+    // Constructors
+    public Customer() {}
+    
+    public Customer(Customer other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.mobile = other.mobile;
+        this.accountNumber = other.accountNumber;
+        this.uniqueKey = other.uniqueKey;
+        this.emailId = other.emailId;
+        this.balance = other.balance;
+        this.unique10Digit = other.unique10Digit;
+    }
+    
+    public Customer(String name, String mobile, String accountNumber, 
+                   String uniqueKey, String emailId, double balance, String unique10Digit) {
+        this.name = name;
+        this.mobile = mobile;
+        this.accountNumber = accountNumber;
+        this.uniqueKey = uniqueKey;
+        this.emailId = emailId;
+        this.balance = balance;
+        this.unique10Digit = unique10Digit;
     }
     
     // Getters and Setters
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
-    public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public String getMobile() { return mobile; }
+    public void setMobile(String mobile) { this.mobile = mobile; }
+    
+    public String getAccountNumber() { return accountNumber; }
+    public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
+    
+    public String getUniqueKey() { return uniqueKey; }
+    public void setUniqueKey(String uniqueKey) { this.uniqueKey = uniqueKey; }
+    
+    public String getEmailId() { return emailId; }
+    public void setEmailId(String emailId) { this.emailId = emailId; }
+    
+    public double getBalance() { return balance; }
+    public void setBalance(double balance) { this.balance = balance; }
+    
+    public String getUnique10Digit() { return unique10Digit; }
+    public void setUnique10Digit(String unique10Digit) { this.unique10Digit = unique10Digit; }
+    
+    // Generate QR Code data (parsed back by QrPayload)
+    public String generateQRData() {
+        return mobile + accountNumber + unique10Digit;
+    }
+}
+
+// Transaction.java
+package com.OnePay.paymentapp;
+
+public class Transaction {
+    private int transactionId;
+    private String fromCustomer;
+    private String toCustomer;
+    private double amount;
+    private String timestamp;
+    private String status;
+    
+    // Constructors
+    public Transaction() {}
+    
+    public Transaction(String fromCustomer, String toCustomer, double amount, String status) {
+        this.fromCustomer = fromCustomer;
+        this.toCustomer = toCustomer;
+        this.amount = amount;
+        this.status = status;
+    }
+    
+    // Getters and Setters
+    public int getTransactionId() { return transactionId; }
+    public void setTransactionId(int transactionId) { this.transactionId = transactionId; }
+    
+    public String getFromCustomer() { return fromCustomer; }
+    public void setFromCustomer(String fromCustomer) { this.fromCustomer = fromCustomer; }
+    
+    public String getToCustomer() { return toCustomer; }
+    public void setToCustomer(String toCustomer) { this.toCustomer = toCustomer; }
+    
+    public double getAmount() { return amount; }
+    public void setAmount(double amount) { this.amount = amount; }
+    
+    public String getTimestamp() { return timestamp; }
+    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+}
+
+// ActivitySummary.java
+package com.OnePay.paymentapp;
+
+/** Sent and received totals of one customer for one day or month bucket. */
+public class ActivitySummary {
+    private final String bucket;
+    private final double sentTotal;
+    private final int sentCount;
+    private final double receivedTotal;
+    private final int receivedCount;
+    
+    public ActivitySummary(String bucket, double sentTotal, int sentCount, 
+                           double receivedTotal, int receivedCount) {
+        this.bucket = bucket;
+        this.sentTotal = sentTotal;
+        this.sentCount = sentCount;
+        this.receivedTotal = receivedTotal;
+        this.receivedCount = receivedCount;
+    }
+    
+    public String getBucket() { return bucket; }
+    public double getSentTotal() { return sentTotal; }
+    public int getSentCount() { return sentCount; }
+    public double getReceivedTotal() { return receivedTotal; }
+    public int getReceivedCount() { return receivedCount; }
+    
+    /** Received minus sent; successive buckets give the balance trend. */
+    public double getNet() { return receivedTotal - sentTotal; }
+}
+
+// CustomerRowMapper.java
+package com.OnePay.paymentapp;
+
+import android.database.Cursor;
+
+/**
+ * Turns rows of the customers table into Customer objects. Column indices
+ * are looked up once per cursor instead of once per row. Columns left out of
+ * the projection are skipped, so narrow queries such as the recipient index
+ * load map without errors. The balance column must come from
+ * {@link LedgerSchema#CUSTOMER_SELECT_SQL}; the raw column is only a snapshot.
+ */
+public class CustomerRowMapper {
+    private final int idIndex;
+    private final int nameIndex;
+    private final int mobileIndex;
+    private final int accountNumberIndex;
+    private final int uniqueKeyIndex;
+    private final int emailIdIndex;
+    private final int balanceIndex;
+    private final int unique10DigitIndex;
+    
+    public CustomerRowMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_ID);
+        nameIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_NAME);
+        mobileIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_MOBILE);
+        accountNumberIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_ACCOUNT_NUMBER);
+        uniqueKeyIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_UNIQUE_KEY);
+        emailIdIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_EMAIL_ID);
+        balanceIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_BALANCE);
+        unique10DigitIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_UNIQUE_10_DIGIT);
+    }
+    
+    public Customer map(Cursor cursor) {
+        Customer customer = new Customer();
+        if (idIndex >= 0) customer.setId(cursor.getInt(idIndex));
+        if (nameIndex >= 0) customer.setName(cursor.getString(nameIndex));
+        if (mobileIndex >= 0) customer.setMobile(cursor.getString(mobileIndex));
+        if (accountNumberIndex >= 0) customer.setAccountNumber(cursor.getString(accountNumberIndex));
+        if (uniqueKeyIndex >= 0) customer.setUniqueKey(cursor.getString(uniqueKeyIndex));
+        if (emailIdIndex >= 0) customer.setEmailId(cursor.getString(emailIdIndex));
+        if (balanceIndex >= 0) customer.setBalance(cursor.getDouble(balanceIndex));
+        if (unique10DigitIndex >= 0) customer.setUnique10Digit(cursor.getString(unique10DigitIndex));
+        return customer;
+    }
+}
+
+// TransactionRowMapper.java
+package com.OnePay.paymentapp;
+
+import android.database.Cursor;
+
+/**
+ * Turns rows of the transactions table into Transaction objects, resolving
+ * column indices once per cursor. Columns left out of the projection are
+ * skipped.
+ */
+public class TransactionRowMapper {
+    private final int transactionIdIndex;
+    private final int fromCustomerIndex;
+    private final int toCustomerIndex;
+    private final int amountIndex;
+    private final int timestampIndex;
+    private final int statusIndex;
+    
+    public TransactionRowMapper(Cursor cursor) {
+        transactionIdIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_TRANS_ID);
+        fromCustomerIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_FROM_CUSTOMER);
+        toCustomerIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_TO_CUSTOMER);
+        amountIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_AMOUNT);
+        timestampIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_TIMESTAMP);
+        statusIndex = cursor.getColumnIndex(LedgerSchema.COLUMN_STATUS);
+    }
+    
+    public Transaction map(Cursor cursor) {
+        Transaction transaction = new Transaction();
+        if (transactionIdIndex >= 0) transaction.setTransactionId(cursor.getInt(transactionIdIndex));
+        if (fromCustomerIndex >= 0) transaction.setFromCustomer(cursor.getString(fromCustomerIndex));
+        if (toCustomerIndex >= 0) transaction.setToCustomer(cursor.getString(toCustomerIndex));
+        if (amountIndex >= 0) transaction.setAmount(cursor.getDouble(amountIndex));
+        if (timestampIndex >= 0) transaction.setTimestamp(cursor.getString(timestampIndex));
+        if (statusIndex >= 0) transaction.setStatus(cursor.getString(statusIndex));
+        return transaction;
+    }
+}
+
+// HistoryExporter.java
+package com.OnePay.paymentapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a transaction statement as CSV or JSON Lines, one row at a time as
+ * the store reads them from its cursor. Rows are formatted into one reused
+ * text buffer, encoded into one reused byte buffer and written to a
+ * FileChannel, so memory stays the same however many rows are exported.
+ *
+ * The file is written under a temporary name and only renamed to the
+ * target by {@link #finish}; closing an unfinished exporter deletes it.
+ */
+public class HistoryExporter implements Closeable {
+    public enum Format { CSV, JSON_LINES }
+    
+    public interface ProgressListener {
+        /**
+         * Called on the exporting thread every {@link #PROGRESS_INTERVAL_ROWS} rows
+         * and once at the end. {@code totalRows} is -1 when the store cannot tell.
+         */
+        void onProgress(long rowsWritten, long totalRows);
+    }
+    
+    public static final int PROGRESS_INTERVAL_ROWS = 5000;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Formatted text is encoded once it grows past this many chars
+    private static final int TEXT_FLUSH_CHARS = 16 * 1024;
+    private static final String CSV_HEADER = "transaction_id,timestamp,direction,from_customer,to_customer,amount,status\n";
+    
+    private final File target;
+    private final File partial;
+    private final Format format;
+    private final String accountMobile;
+    private final FileOutputStream file;
+    private final FileChannel channel;
+    // Null unless gzip was asked for; then bytes go through it instead of straight to the channel
+    private final GZIPOutputStream gzip;
+    private final StringBuilder text = new StringBuilder(TEXT_FLUSH_CHARS + 512);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    
+    private ProgressListener progressListener;
+    private long totalRows = -1;
+    private long rowsWritten;
+    private boolean finished;
+    
+    /**
+     * @param accountMobile the customer the statement is for; each row is
+     *                      marked as sent or received relative to it
+     */
+    public HistoryExporter(File target, Format format, boolean gzip, String accountMobile) throws IOException {
+        this.target = target;
+        this.partial = new File(target.getPath() + ".partial");
+        this.format = format;
+        this.accountMobile = accountMobile;
+        this.file = new FileOutputStream(partial);
+        this.channel = file.getChannel();
+        this.gzip = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES) : null;
+        if (format == Format.CSV) {
+            text.append(CSV_HEADER);
+        }
+    }
+    
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+    
+    /** Set by the store before the first row when it knows the row count up front. */
+    void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+    
+    public void writeRow(long transactionId, String fromCustomer, String toCustomer, 
+                         double amount, String timestamp, String status) throws IOException {
+        String direction = accountMobile.equals(fromCustomer) ? "sent" : "received";
+        if (format == Format.CSV) {
+            text.append(transactionId).append(',');
+            appendCsv(timestamp).append(',');
+            text.append(direction).append(',');
+            appendCsv(fromCustomer).append(',');
+            appendCsv(toCustomer).append(',');
+            text.append(amount).append(',');
+            appendCsv(status).append('\n');
+        } else {
+            text.append("{\"transaction_id\":").append(transactionId);
+            text.append(",\"timestamp\":");
+            appendJson(text, timestamp);
+            text.append(",\"direction\":\"").append(direction).append('"');
+            text.append(",\"from_customer\":");
+            appendJson(text, fromCustomer);
+            text.append(",\"to_customer\":");
+            appendJson(text, toCustomer);
+            text.append(",\"amount\":").append(amount);
+            text.append(",\"status\":");
+            appendJson(text, status);
+            text.append("}\n");
+        }
+        
+        rowsWritten++;
+        if (text.length() >= TEXT_FLUSH_CHARS) {
+            encodeText();
+        }
+        if (progressListener != null && rowsWritten % PROGRESS_INTERVAL_ROWS == 0) {
+            progressListener.onProgress(rowsWritten, totalRows);
+        }
+    }
+    
+    /**
+     * Flushes everything, syncs and moves the file to its target name.
+     *
+     * @return the number of rows written
+     */
+    public long finish() throws IOException {
+        encodeText();
+        drainBytes();
+        if (gzip != null) {
+            // Writes the trailer but leaves the channel open for the sync below
+            gzip.finish();
+            gzip.flush();
+        }
+        channel.force(true);
+        file.close();
+        if (!partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Could not move export to " + target);
+        }
+        finished = true;
+        if (progressListener != null) {
+            progressListener.onProgress(rowsWritten, totalRows);
+        }
+        return rowsWritten;
+    }
+    
+    /** Abandons an export that was not finished and deletes its partial file. */
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException ignored) {
+            // Deleting below is all that is left to do
+        }
+        partial.delete();
+    }
     
-    public String getMobile() { return mobile; }
-    public void setMobile(String mobile) { this.mobile = mobile; }
+    private void encodeText() throws IOException {
+        CharBuffer in = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(in, bytes, false);
+            if (result.isOverflow()) {
+                drainBytes();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        text.setLength(0);
+    }
     
-    public String getAccountNumber() { return accountNumber; }
-    public void setAccountNumber(String accountNumber) { this.accountNumber = accountNumber; }
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        if (gzip != null) {
+            gzip.write(bytes.array(), 0, bytes.limit());
+        } else {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        bytes.clear();
+    }
     
-    public String getUniqueKey() { return uniqueKey; }
-    public void setUniqueKey(String uniqueKey) { this.uniqueKey = uniqueKey; }
+    private StringBuilder appendCsv(String value) {
+        if (value == null) {
+            return text;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return text.append(value);
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                text.append('"');
+            }
+            text.append(c);
+        }
+        return text.append('"');
+    }
     
-    public String getEmailId() { return emailId; }
-    public void setEmailId(String emailId) { this.emailId = emailId; }
+    /** Appends {@code value} as a JSON string literal, or null. */
+    static void appendJson(StringBuilder text, String value) {
+        if (value == null) {
+            text.append("null");
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': text.append("\\\""); break;
+                case '\\': text.append("\\\\"); break;
+                case '\n': text.append("\\n"); break;
+                case '\r': text.append("\\r"); break;
+                case '\t': text.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        text.append("\\u00").append(Character.forDigit(c >> 4, 16))
+                                .append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        text.append(c);
+                    }
+            }
+        }
+        text.append('"');
+    }
+}
+
+// TransactionSearch.java
+package com.OnePay.paymentapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filters for searching one customer's history. Free text is matched
+ * against the counterparty's name, mobile and email ID and the status;
+ * every word must prefix one of them. Words shorter than
+ * {@link #MIN_TERM_LENGTH} are ignored: a single letter prefixes the names
+ * of a large share of all customers, and looking them all up costs more
+ * than it filters out. Null amounts, dates or text leave that filter off.
+ * Dates are compared as text with the stored timestamps: {@code fromDate}
+ * inclusive, {@code toDate} exclusive.
+ */
+public class TransactionSearch {
+    /** Shortest word, in letters or digits, that is searched for. */
+    public static final int MIN_TERM_LENGTH = 2;
+    // Longer queries are cut here; each word adds a subquery to the search
+    private static final int MAX_TERMS = 8;
     
-    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
+    private final String customerMobile;
+    private final String text;
+    private final Double minAmount;
+    private final Double maxAmount;
+    private final String fromDate;
+    private final String toDate;
     
-    public String getUnique10Digit() { return unique10Digit; }
-    public void setUnique10Digit(String unique10Digit) { this.unique10Digit = unique10Digit; }
+    public TransactionSearch(String customerMobile, String text, Double minAmount, Double maxAmount, 
+                             String fromDate, String toDate) {
+        this.customerMobile = customerMobile;
+        this.text = text;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
     
-    // Generate QR Code data
-    public String generateQRData() {
-        return mobile + accountNumber + unique10Digit;
+    public String getCustomerMobile() { return customerMobile; }
+    public String getText() { return text; }
+    public Double getMinAmount() { return minAmount; }
+    public Double getMaxAmount() { return maxAmount; }
+    public String getFromDate() { return fromDate; }
+    public String getToDate() { return toDate; }
+    
+    /**
+     * The words of the text that are searched for, lower-cased. Anything but
+     * a letter or digit, in any script, splits words the same way the
+     * unicode61 index tokenizer does, so "jane.smith@" gives "jane" and
+     * "smith", and what remains is never query syntax. Words shorter than
+     * {@link #MIN_TERM_LENGTH} are left out.
+     */
+    List<String> getTerms() {
+        List<String> terms = new ArrayList<>();
+        for (String word : words()) {
+            if (word.codePointCount(0, word.length()) >= MIN_TERM_LENGTH && terms.size() < MAX_TERMS) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+    
+    /**
+     * True when there is text but not a single letter or digit in it, such
+     * as "!!"; nothing can match it. Text of only short words, such as "a",
+     * leaves the text filter off instead.
+     */
+    boolean matchesNothing() {
+        return text != null && !text.trim().isEmpty() && words().isEmpty();
+    }
+    
+    private List<String> words() {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
     }
 }
 
-// Transaction.java
+// CustomerIds.java
 package com.OnePay.paymentapp;
 
-public class Transaction {
-    private int transactionId;
-    private String fromCustomer;
-    private String toCustomer;
-    private double amount;
-    private String timestamp;
-    private String status;
+/**
+ * The identifiers given to a new customer, all derived from one number of
+ * the persisted customer sequence. Each value is a bijection of the
+ * sequence number followed by a Luhn check character, so two sequence
+ * numbers can never produce the same value. A single mistyped character
+ * always fails the check. A swap of neighbours fails it too, except a swap
+ * of the alphabet's first and last characters: 09 and 90 in digits, A9 and
+ * 9A in keys.
+ *
+ * Unique keys, email IDs and account numbers are longer than the random
+ * ones issued before schema v8, so they cannot meet those either. The
+ * unique 10-digit number keeps its length because QR codes depend on it;
+ * {@link DatabaseHelper#registerCustomers} steps over older values.
+ */
+public final class CustomerIds {
+    static final String DIGITS = "0123456789";
+    static final String KEY_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final int KEY_LENGTH = 7;
+    private static final long KEY_SPACE = 78364164096L; // 36^7
+    private static final long TEN_DIGIT_BASE = 100000000L;
+    private static final long TEN_DIGIT_SPACE = 900000000L; // 9-digit payloads, no leading zero
+    // Multipliers coprime to their moduli, so sequence -> value is a bijection
+    private static final long UNIQUE_KEY_MULTIPLIER = 48271L;
+    private static final long EMAIL_KEY_MULTIPLIER = 16807L;
+    private static final long TEN_DIGIT_MULTIPLIER = 1000000007L;
     
-    // Constructors
-    public Transaction() {}
+    /** Sequence numbers run from 1 up to, not including, this. */
+    static final long SEQUENCE_LIMIT = TEN_DIGIT_SPACE;
     
-    public Transaction(String fromCustomer, String toCustomer, double amount, String status) {
-        this.fromCustomer = fromCustomer;
-        this.toCustomer = toCustomer;
-        this.amount = amount;
-        this.status = status;
+    private final String accountNumber;
+    private final String uniqueKey;
+    private final String emailId;
+    private final String unique10Digit;
+    
+    private CustomerIds(String accountNumber, String uniqueKey, String emailId, String unique10Digit) {
+        this.accountNumber = accountNumber;
+        this.uniqueKey = uniqueKey;
+        this.emailId = emailId;
+        this.unique10Digit = unique10Digit;
     }
     
-    // Getters and Setters
-    public int getTransactionId() { return transactionId; }
-    public void setTransactionId(int transactionId) { this.transactionId = transactionId; }
+    public static CustomerIds forSequence(long sequence) {
+        if (sequence < 1 || sequence >= SEQUENCE_LIMIT) {
+            throw new IllegalStateException("Customer sequence exhausted at " + sequence);
+        }
+        String account = String.valueOf(sequence);
+        account = "000000000".substring(account.length()) + account;
+        String uniqueKey = base36Key(scramble(sequence, UNIQUE_KEY_MULTIPLIER, KEY_SPACE));
+        String emailKey = base36Key(scramble(sequence, EMAIL_KEY_MULTIPLIER, KEY_SPACE));
+        String tenDigit = String.valueOf(TEN_DIGIT_BASE + scramble(sequence, TEN_DIGIT_MULTIPLIER, TEN_DIGIT_SPACE));
+        return new CustomerIds(
+                "ACC" + withCheck(account, DIGITS),
+                withCheck(uniqueKey, KEY_CHARS),
+                withCheck(emailKey, KEY_CHARS) + "@OnePay.com",
+                withCheck(tenDigit, DIGITS));
+    }
     
-    public String getFromCustomer() { return fromCustomer; }
-    public void setFromCustomer(String fromCustomer) { this.fromCustomer = fromCustomer; }
+    public String getAccountNumber() { return accountNumber; }
+    public String getUniqueKey() { return uniqueKey; }
+    public String getEmailId() { return emailId; }
+    public String getUnique10Digit() { return unique10Digit; }
     
-    public String getToCustomer() { return toCustomer; }
-    public void setToCustomer(String toCustomer) { this.toCustomer = toCustomer; }
+    private static long scramble(long sequence, long multiplier, long modulus) {
+        return (sequence * multiplier) % modulus;
+    }
     
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    private static String base36Key(long value) {
+        char[] key = new char[KEY_LENGTH];
+        for (int i = KEY_LENGTH - 1; i >= 0; i--) {
+            key[i] = KEY_CHARS.charAt((int) (value % 36));
+            value /= 36;
+        }
+        return new String(key);
+    }
     
-    public String getTimestamp() { return timestamp; }
-    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+    /** Whether the last character of {@code value} is the check character of the rest. */
+    static boolean hasValidCheck(String value, String alphabet) {
+        return value.length() > 1 && withCheck(value.substring(0, value.length() - 1), alphabet).equals(value);
+    }
     
-    public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
+    /** Appends the Luhn mod N check character; plain Luhn for digits. */
+    private static String withCheck(String payload, String alphabet) {
+        int radix = alphabet.length();
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = payload.length() - 1; i >= 0; i--) {
+            int addend = alphabet.indexOf(payload.charAt(i)) * (doubled ? 2 : 1);
+            sum += addend / radix + addend % radix;
+            doubled = !doubled;
+        }
+        return payload + alphabet.charAt((radix - sum % radix) % radix);
+    }
+}
+
+// CustomerRegistration.java
+package com.OnePay.paymentapp;
+
+/** One item of a {@link DatabaseHelper#registerCustomers} batch. */
+public class CustomerRegistration {
+    private final String name;
+    private final String mobile;
+    private final double openingBalance;
+    
+    public CustomerRegistration(String name, String mobile, double openingBalance) {
+        this.name = name;
+        this.mobile = mobile;
+        this.openingBalance = openingBalance;
+    }
+    
+    public String getName() { return name; }
+    public String getMobile() { return mobile; }
+    public double getOpeningBalance() { return openingBalance; }
+}
+
+// TransferRequest.java
+package com.OnePay.paymentapp;
+
+/** One item of a {@link LedgerStore#bulkTransfer} batch. */
+public class TransferRequest {
+    private final String fromMobile;
+    private final String toMobile;
+    private final double amount;
+    
+    public TransferRequest(String fromMobile, String toMobile, double amount) {
+        this.fromMobile = fromMobile;
+        this.toMobile = toMobile;
+        this.amount = amount;
+    }
+    
+    public String getFromMobile() { return fromMobile; }
+    public String getToMobile() { return toMobile; }
+    public double getAmount() { return amount; }
 }
 
 // QRCodeActivity.java
 package com.OnePay.paymentapp;
 
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.WriterException;
-import com.journeyapps.barcodescanner.BarcodeEncoder;
 
 public class QRCodeActivity extends AppCompatActivity {
+    private static final int QR_SIZE_PX = 400;
+    
     private ImageView qrCodeImageView;
     private TextView qrDataTextView;
     
@@ -438,15 +5409,338 @@ public class QRCodeActivity extends AppCompatActivity {
             String qrData = currentUser.generateQRData();
             qrDataTextView.setText("QR Data: " + qrData);
             
-            try {
-                BarcodeEncoder barcodeEncoder = new BarcodeEncoder();
-                Bitmap bitmap = barcodeEncoder.encodeBitmap(qrData, BarcodeFormat.QR_CODE, 400, 400);
+            // Served from memory or disk when the payload is unchanged; encoded off the main thread otherwise
+            QrCodeCache.getInstance(this).load(qrData, QR_SIZE_PX, (bitmap, error) -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                    return;
+                }
                 qrCodeImageView.setImageBitmap(bitmap);
-            } catch (WriterException e) {
-                e.printStackTrace();
+            });
+        }
+    }
+}
+
+// QrCodeCache.java
+package com.OnePay.paymentapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import com.google.zxing.BarcodeFormat;
+import com.journeyapps.barcodescanner.BarcodeEncoder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Two-level cache of rendered QR codes: bitmaps in memory, PNGs on disk
+ * under the app cache directory. Entries are keyed by a hash of the payload
+ * and size, so a new payload simply misses and re-encodes; nothing has to be
+ * invalidated by hand. Encoding and disk I/O run on a background thread.
+ */
+public class QrCodeCache {
+    private static final int MEMORY_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_DISK_ENTRIES = 8;
+    private static final String DISK_CACHE_DIR = "qr";
+    
+    private static QrCodeCache instance;
+    
+    private final File diskCacheDir;
+    private final LruCache<String, Bitmap> memoryCache = new LruCache<String, Bitmap>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OnePay-qr");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    public static synchronized QrCodeCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new QrCodeCache(new File(context.getApplicationContext().getCacheDir(), DISK_CACHE_DIR));
+        }
+        return instance;
+    }
+    
+    private QrCodeCache(File diskCacheDir) {
+        this.diskCacheDir = diskCacheDir;
+    }
+    
+    /**
+     * Delivers the QR bitmap for {@code payload} to {@code callback} on the
+     * main thread. A memory hit is delivered immediately, before returning.
+     */
+    public void load(String payload, int sizePx, PaymentRepository.Callback<Bitmap> callback) {
+        String key = cacheKey(payload, sizePx);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onComplete(cached, null);
+            return;
+        }
+        
+        executor.execute(() -> {
+            Bitmap bitmap = null;
+            Exception error = null;
+            try {
+                bitmap = loadOrEncode(key, payload, sizePx);
+                memoryCache.put(key, bitmap);
+            } catch (Exception e) {
+                error = e;
+            }
+            Bitmap result = bitmap;
+            Exception failure = error;
+            mainHandler.post(() -> callback.onComplete(result, failure));
+        });
+    }
+    
+    private Bitmap loadOrEncode(String key, String payload, int sizePx) throws Exception {
+        File file = new File(diskCacheDir, key + ".png");
+        if (file.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        
+        Bitmap bitmap = new BarcodeEncoder().encodeBitmap(payload, BarcodeFormat.QR_CODE, sizePx, sizePx);
+        try {
+            writePng(bitmap, file);
+        } catch (IOException e) {
+            // The disk cache is an optimisation; the freshly encoded bitmap is still good
+            file.delete();
+        }
+        return bitmap;
+    }
+    
+    private void writePng(Bitmap bitmap, File file) throws IOException {
+        if (!diskCacheDir.isDirectory() && !diskCacheDir.mkdirs()) {
+            throw new IOException("Cannot create " + diskCacheDir);
+        }
+        // Write then rename so a crash never leaves a truncated PNG behind
+        File temp = new File(diskCacheDir, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp);
+        }
+        trimDiskCache();
+    }
+    
+    private void trimDiskCache() {
+        File[] files = diskCacheDir.listFiles();
+        if (files == null || files.length <= MAX_DISK_ENTRIES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_DISK_ENTRIES; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+    
+    private static String cacheKey(String payload, int sizePx) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((payload + "|" + sizePx).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
+
+// ScanToPayActivity.java
+package com.OnePay.paymentapp;
+
+import android.Manifest;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.widget.TextView;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+import com.google.zxing.BarcodeFormat;
+import com.journeyapps.barcodescanner.DecoratedBarcodeView;
+import com.journeyapps.barcodescanner.DefaultDecoderFactory;
+import java.util.Collections;
+
+public class ScanToPayActivity extends AppCompatActivity {
+    private static final int REQUEST_CAMERA = 1;
+    
+    private DecoratedBarcodeView barcodeView;
+    private TextView scanStatusTextView;
+    private PaymentRepository repository;
+    // Scans keep arriving while a payee lookup runs; ignore them until it finishes
+    private boolean resolving = false;
+    private String lastRejectedPayload;
+    
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_scan_to_pay);
+        
+        repository = PaymentRepository.getInstance(this);
+        barcodeView = findViewById(R.id.barcodeView);
+        scanStatusTextView = findViewById(R.id.scanStatusTextView);
+        
+        // Only look for QR codes; the camera thread asks for the next frame
+        // only after the current one has been decoded, so frames are dropped
+        // rather than queued while a decode is running
+        barcodeView.getBarcodeView().setDecoderFactory(
+                new DefaultDecoderFactory(Collections.singletonList(BarcodeFormat.QR_CODE)));
+        barcodeView.decodeContinuous(result -> onScanned(result.getText()));
+        
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) 
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, REQUEST_CAMERA);
+        }
+    }
+    
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == REQUEST_CAMERA) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                barcodeView.resume();
+            } else {
+                scanStatusTextView.setText("Camera permission is needed to scan QR codes");
+            }
+        }
+    }
+    
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) 
+                == PackageManager.PERMISSION_GRANTED) {
+            barcodeView.resume();
+        }
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        barcodeView.pause();
+    }
+    
+    private void onScanned(String text) {
+        if (resolving || text == null || text.equals(lastRejectedPayload)) {
+            return;
+        }
+        
+        QrPayload payload = QrPayload.parse(text);
+        if (payload == null) {
+            lastRejectedPayload = text;
+            scanStatusTextView.setText("Not a OnePay QR code");
+            return;
+        }
+        
+        resolving = true;
+        scanStatusTextView.setText("Looking up recipient...");
+        repository.resolveQrPayee(payload, (payee, error) -> {
+            resolving = false;
+            if (isFinishing()) {
+                return;
+            }
+            if (error != null || payee == null) {
+                lastRejectedPayload = text;
+                scanStatusTextView.setText("Recipient not found");
+                return;
+            }
+            
+            Intent intent = new Intent(this, SendMoneyActivity.class);
+            intent.putExtra(SendMoneyActivity.EXTRA_RECIPIENT, payee.getMobile());
+            startActivity(intent);
+            finish();
+        });
+    }
+}
+
+// QrPayload.java
+package com.OnePay.paymentapp;
+
+/**
+ * Fields of a payment QR code as written by {@link Customer#generateQRData}:
+ * a 10-digit mobile, the account number ("ACC" and digits), then the
+ * unique 10-digit number, concatenated without separators.
+ */
+public class QrPayload {
+    private static final int MOBILE_LENGTH = 10;
+    private static final int UNIQUE_10_DIGIT_LENGTH = 10;
+    private static final String ACCOUNT_PREFIX = "ACC";
+    
+    private final String mobile;
+    private final String accountNumber;
+    private final String unique10Digit;
+    
+    private QrPayload(String mobile, String accountNumber, String unique10Digit) {
+        this.mobile = mobile;
+        this.accountNumber = accountNumber;
+        this.unique10Digit = unique10Digit;
+    }
+    
+    /** Returns the parsed payload, or null if {@code raw} is not a OnePay payment code. */
+    public static QrPayload parse(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String text = raw.trim();
+        int accountEnd = text.length() - UNIQUE_10_DIGIT_LENGTH;
+        if (accountEnd <= MOBILE_LENGTH + ACCOUNT_PREFIX.length()) {
+            return null;
+        }
+        
+        String mobile = text.substring(0, MOBILE_LENGTH);
+        String accountNumber = text.substring(MOBILE_LENGTH, accountEnd);
+        String unique10Digit = text.substring(accountEnd);
+        if (!isDigits(mobile) || !isDigits(unique10Digit)
+                || !accountNumber.startsWith(ACCOUNT_PREFIX)
+                || !isDigits(accountNumber.substring(ACCOUNT_PREFIX.length()))) {
+            return null;
+        }
+        return new QrPayload(mobile, accountNumber, unique10Digit);
+    }
+    
+    private static boolean isDigits(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
             }
         }
+        return true;
     }
+    
+    public String getMobile() { return mobile; }
+    public String getAccountNumber() { return accountNumber; }
+    public String getUnique10Digit() { return unique10Digit; }
 }
 
 // SendMoneyActivity.java
@@ -455,27 +5749,39 @@ package com.OnePay.paymentapp;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.View;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 public class SendMoneyActivity extends AppCompatActivity {
-    private EditText recipientEditText, amountEditText;
+    // Mobile number to prefill, e.g. from a scanned QR code
+    public static final String EXTRA_RECIPIENT = "recipient";
+    
+    private AutoCompleteTextView recipientEditText;
+    private EditText amountEditText;
     private Button sendMoneyBtn;
-    private DatabaseHelper dbHelper;
+    private PaymentRepository repository;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_send_money);
         
-        dbHelper = new DatabaseHelper(this);
+        repository = PaymentRepository.getInstance(this);
         
         recipientEditText = findViewById(R.id.recipientEditText);
         amountEditText = findViewById(R.id.amountEditText);
         sendMoneyBtn = findViewById(R.id.sendMoneyBtn);
         
+        recipientEditText.setAdapter(new RecipientSuggestionAdapter(this, DatabaseHelper.getInstance(this)));
+        
+        String prefilledRecipient = getIntent().getStringExtra(EXTRA_RECIPIENT);
+        if (prefilledRecipient != null) {
+            recipientEditText.setText(prefilledRecipient);
+        }
+        
         sendMoneyBtn.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -512,38 +5818,36 @@ public class SendMoneyActivity extends AppCompatActivity {
             return;
         }
         
-        Customer recipientCustomer = null;
-        
-        // Check if recipient is mobile number or email ID
-        if (recipient.contains("@OnePay.com")) {
-            recipientCustomer = dbHelper.getCustomerByEmailId(recipient);
-        } else {
-            recipientCustomer = dbHelper.getCustomerByMobile(recipient);
-        }
-        
-        if (recipientCustomer == null) {
-            Toast.makeText(this, "Recipient not found", Toast.LENGTH_SHORT).show();
+        // Guard against double taps while the lookup and transfer are in flight
+        sendMoneyBtn.setEnabled(false);
+        repository.findRecipient(recipient, (recipientCustomer, error) -> {
+            if (isFinishing()) {
+                return;
+            }
+            if (error != null || recipientCustomer == null) {
+                sendMoneyBtn.setEnabled(true);
+                Toast.makeText(this, "Recipient not found", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            
+            // Debit, credit and ledger entry commit together or not at all
+            repository.transfer(currentUser.getMobile(), recipientCustomer.getMobile(), amount,
+                    (transactionId, transferError) -> onTransferComplete(
+                            transferError == null ? transactionId : -1));
+        });
+    }
+    
+    private void onTransferComplete(long transactionId) {
+        if (isFinishing()) {
             return;
         }
         
-        // Process transaction
-        boolean senderUpdated = dbHelper.updateBalance(currentUser.getMobile(), 
-                currentUser.getBalance() - amount);
-        boolean recipientUpdated = dbHelper.updateBalance(recipientCustomer.getMobile(), 
-                recipientCustomer.getBalance() + amount);
-        
-        if (senderUpdated && recipientUpdated) {
-            // Record transaction
-            dbHelper.addTransaction(currentUser.getMobile(), recipientCustomer.getMobile(), 
-                    amount, "SUCCESS");
-            
-            // Update session
-            currentUser.setBalance(currentUser.getBalance() - amount);
-            SessionManager.setCurrentUser(currentUser);
-            
+        if (transactionId != -1) {
+            // MainActivity re-reads the balance when the change tracker reports it
             Toast.makeText(this, "Money sent successfully!", Toast.LENGTH_SHORT).show();
             finish();
         } else {
+            sendMoneyBtn.setEnabled(true);
             Toast.makeText(this, "Transaction failed", Toast.LENGTH_SHORT).show();
         }
     }
@@ -582,32 +5886,158 @@ public class ReceiveMoneyActivity extends AppCompatActivity {
 package com.OnePay.paymentapp;
 
 import android.os.Bundle;
+import android.widget.AbsListView;
 import android.widget.ListView;
 import androidx.appcompat.app.AppCompatActivity;
+import java.util.ArrayList;
 import java.util.List;
 
 public class TransactionHistoryActivity extends AppCompatActivity {
+    private static final int PAGE_SIZE = 50;
+    // Rows kept in memory at once; pages scrolled far away are dropped and re-read on demand
+    private static final int MAX_LOADED_ROWS = PAGE_SIZE * 4;
+    // Start fetching when the user is this many rows away from either edge
+    private static final int PREFETCH_DISTANCE = 10;
+    
     private ListView transactionListView;
-    private DatabaseHelper dbHelper;
+    private PaymentRepository repository;
+    private TransactionAdapter adapter;
+    private final List<Transaction> loadedTransactions = new ArrayList<>();
+    private String currentUserMobile;
+    private boolean hasOlder = true;
+    private boolean hasNewer = false;
+    // Only one page request at a time; scroll events keep firing while it runs
+    private boolean loading = false;
+    private final ChangeTracker.Listener historyListener = (mobile, changes) -> {
+        if ((changes & ChangeTracker.HISTORY) != 0) {
+            onHistoryChanged();
+        }
+    };
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_transaction_history);
         
-        dbHelper = new DatabaseHelper(this);
+        repository = PaymentRepository.getInstance(this);
         transactionListView = findViewById(R.id.transactionListView);
         
         loadTransactionHistory();
     }
     
+    @Override
+    protected void onDestroy() {
+        if (currentUserMobile != null) {
+            repository.removeCustomerListener(currentUserMobile, historyListener);
+        }
+        super.onDestroy();
+    }
+    
     private void loadTransactionHistory() {
         Customer currentUser = SessionManager.getCurrentUser();
         if (currentUser != null) {
-            List<Transaction> transactions = dbHelper.getTransactionHistory(currentUser.getMobile());
-            TransactionAdapter adapter = new TransactionAdapter(this, transactions, currentUser.getMobile());
+            currentUserMobile = currentUser.getMobile();
+            adapter = new TransactionAdapter(this, loadedTransactions, currentUserMobile);
             transactionListView.setAdapter(adapter);
+            repository.addCustomerListener(currentUserMobile, historyListener);
+            
+            loadOlderPage();
+            transactionListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(AbsListView view, int scrollState) {}
+                
+                @Override
+                public void onScroll(AbsListView view, int firstVisibleItem, 
+                                     int visibleItemCount, int totalItemCount) {
+                    if (hasOlder && firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_DISTANCE) {
+                        loadOlderPage();
+                    } else if (hasNewer && firstVisibleItem <= PREFETCH_DISTANCE) {
+                        loadNewerPage();
+                    }
+                }
+            });
+        }
+    }
+    
+    private void onHistoryChanged() {
+        if (loadedTransactions.isEmpty()) {
+            hasOlder = true;
+            loadOlderPage();
+            return;
+        }
+        // New rows sort above the loaded window; fetch them now if the top is in view
+        hasNewer = true;
+        if (transactionListView.getFirstVisiblePosition() <= PREFETCH_DISTANCE) {
+            loadNewerPage();
+        }
+    }
+    
+    private void loadOlderPage() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        Transaction last = loadedTransactions.isEmpty() 
+                ? null : loadedTransactions.get(loadedTransactions.size() - 1);
+        repository.getTransactionHistoryPage(currentUserMobile, last, PAGE_SIZE, (page, error) -> {
+            loading = false;
+            if (isDestroyed() || error != null) {
+                return;
+            }
+            onOlderPageLoaded(page);
+        });
+    }
+    
+    private void onOlderPageLoaded(List<Transaction> page) {
+        hasOlder = page.size() == PAGE_SIZE;
+        if (page.isEmpty()) {
+            return;
         }
+        
+        loadedTransactions.addAll(page);
+        int overflow = loadedTransactions.size() - MAX_LOADED_ROWS;
+        if (overflow > 0) {
+            // Drop rows off the top and keep the same row under the user's finger
+            int first = transactionListView.getFirstVisiblePosition();
+            loadedTransactions.subList(0, overflow).clear();
+            hasNewer = true;
+            adapter.notifyDataSetChanged();
+            transactionListView.setSelection(Math.max(0, first - overflow));
+        } else {
+            adapter.notifyDataSetChanged();
+        }
+    }
+    
+    private void loadNewerPage() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        Transaction first = loadedTransactions.get(0);
+        repository.getNewerTransactionHistoryPage(currentUserMobile, first, PAGE_SIZE, (page, error) -> {
+            loading = false;
+            if (isDestroyed() || error != null) {
+                return;
+            }
+            onNewerPageLoaded(page);
+        });
+    }
+    
+    private void onNewerPageLoaded(List<Transaction> page) {
+        hasNewer = page.size() == PAGE_SIZE;
+        if (page.isEmpty()) {
+            return;
+        }
+        
+        int firstVisible = transactionListView.getFirstVisiblePosition();
+        loadedTransactions.addAll(0, page);
+        int overflow = loadedTransactions.size() - MAX_LOADED_ROWS;
+        if (overflow > 0) {
+            loadedTransactions.subList(loadedTransactions.size() - overflow, loadedTransactions.size()).clear();
+            hasOlder = true;
+        }
+        adapter.notifyDataSetChanged();
+        transactionListView.setSelection(firstVisible + page.size());
     }
 }
 
@@ -645,7 +6075,13 @@ public class TransactionAdapter extends BaseAdapter {
     
     @Override
     public long getItemId(int position) {
-        return position;
+        return transactions.get(position).getTransactionId();
+    }
+    
+    @Override
+    public boolean hasStableIds() {
+        // Rows shift position as history pages are added and dropped
+        return true;
     }
     
     @Override
@@ -672,24 +6108,570 @@ public class TransactionAdapter extends BaseAdapter {
     }
 }
 
+// IntentEngine.java
+package com.OnePay.paymentapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Matches chat messages to intents. Every keyword and phrase of every intent
+ * is compiled once into a single Aho-Corasick automaton, so a message is
+ * read in one pass whatever the number of intents; the cost depends only on
+ * the message length and the number of hits. A hit only counts when it is a
+ * whole word or words, so "hi" matches "hi" and "hi there" but not "this".
+ * Each hit adds its phrase weight to its intent, a phrase counts once per
+ * message, and the best-scoring intent wins. Ties go to the intent added first.
+ */
+public class IntentEngine {
+    private static final int ROOT = 0;
+    private static final int ASCII = 128;
+    
+    private final String[] intentIds;
+    private final String[] templates;
+    private final double[] minScores;
+    private final int[] phraseIntent;
+    private final double[] phraseWeight;
+    private final int[] phraseLength;
+    
+    // DFA over a reduced alphabet: transitions[state * alphabetSize + symbol]
+    private final int[] transitions;
+    private final int alphabetSize;
+    private final int[] asciiSymbols;
+    private final Map<Character, Integer> otherSymbols;
+    // Phrases ending in each state, own and inherited through failure links
+    private final int[] outputStart;
+    private final int[] outputs;
+    
+    // Per-message scratch, reset lazily by stamping instead of clearing
+    private final int[] phraseStamp;
+    private final int[] intentStamp;
+    private final double[] intentScore;
+    private final int[] touched;
+    private int stamp;
+    
+    public static class Match {
+        private final String intentId;
+        private final String response;
+        private final double score;
+        
+        Match(String intentId, String response, double score) {
+            this.intentId = intentId;
+            this.response = response;
+            this.score = score;
+        }
+        
+        public String getIntentId() { return intentId; }
+        public String getResponse() { return response; }
+        public double getScore() { return score; }
+    }
+    
+    private IntentEngine(Builder builder) {
+        int intentCount = builder.intentIds.size();
+        intentIds = builder.intentIds.toArray(new String[0]);
+        templates = builder.templates.toArray(new String[0]);
+        minScores = new double[intentCount];
+        for (int i = 0; i < intentCount; i++) {
+            minScores[i] = builder.minScores.get(i);
+        }
+        int phraseCount = builder.phrases.size();
+        phraseIntent = new int[phraseCount];
+        phraseWeight = new double[phraseCount];
+        phraseLength = new int[phraseCount];
+        for (int i = 0; i < phraseCount; i++) {
+            phraseIntent[i] = builder.phraseIntents.get(i);
+            phraseWeight[i] = builder.phraseWeights.get(i);
+            phraseLength[i] = builder.phrases.get(i).length();
+        }
+        
+        // Alphabet: every character used by a phrase, plus symbol 0 for the rest
+        asciiSymbols = new int[ASCII];
+        otherSymbols = new HashMap<>();
+        int symbols = 1;
+        for (String phrase : builder.phrases) {
+            for (int i = 0; i < phrase.length(); i++) {
+                char c = phrase.charAt(i);
+                if (symbolOf(c) == 0) {
+                    if (c < ASCII) {
+                        asciiSymbols[c] = symbols++;
+                    } else {
+                        otherSymbols.put(c, symbols++);
+                    }
+                }
+            }
+        }
+        alphabetSize = symbols;
+        
+        // Trie, with -1 for missing edges
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(newRow());
+        ends.add(new ArrayList<Integer>());
+        for (int p = 0; p < phraseCount; p++) {
+            String phrase = builder.phrases.get(p);
+            int state = ROOT;
+            for (int i = 0; i < phrase.length(); i++) {
+                int symbol = symbolOf(phrase.charAt(i));
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newRow());
+                    ends.add(new ArrayList<Integer>());
+                }
+                state = trie.get(state)[symbol];
+            }
+            ends.get(state).add(p);
+        }
+        
+        // Breadth-first: resolve failure links into full transitions and
+        // merge each state's outputs with those of its failure state
+        int stateCount = trie.size();
+        transitions = new int[stateCount * alphabetSize];
+        int[] fail = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        List<List<Integer>> merged = new ArrayList<>(ends);
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            int child = trie.get(ROOT)[symbol];
+            if (child < 0) {
+                transitions[symbol] = ROOT;
+            } else {
+                transitions[symbol] = child;
+                fail[child] = ROOT;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            if (!merged.get(fail[state]).isEmpty()) {
+                List<Integer> combined = new ArrayList<>(ends.get(state));
+                combined.addAll(merged.get(fail[state]));
+                merged.set(state, combined);
+            }
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                int child = trie.get(state)[symbol];
+                int fallback = transitions[fail[state] * alphabetSize + symbol];
+                if (child < 0) {
+                    transitions[state * alphabetSize + symbol] = fallback;
+                } else {
+                    transitions[state * alphabetSize + symbol] = child;
+                    fail[child] = fallback;
+                    queue[tail++] = child;
+                }
+            }
+        }
+        
+        outputStart = new int[stateCount + 1];
+        int total = 0;
+        for (int state = 0; state < stateCount; state++) {
+            outputStart[state] = total;
+            total += merged.get(state).size();
+        }
+        outputStart[stateCount] = total;
+        outputs = new int[total];
+        for (int state = 0; state < stateCount; state++) {
+            int at = outputStart[state];
+            for (int phrase : merged.get(state)) {
+                outputs[at++] = phrase;
+            }
+        }
+        
+        phraseStamp = new int[phraseCount];
+        intentStamp = new int[intentCount];
+        intentScore = new double[intentCount];
+        touched = new int[intentCount];
+    }
+    
+    private int[] newRow() {
+        int[] row = new int[alphabetSize > 0 ? alphabetSize : 1];
+        Arrays.fill(row, -1);
+        return row;
+    }
+    
+    private static boolean isWordChar(String text, int i) {
+        return i >= 0 && i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+    }
+    
+    private int symbolOf(char c) {
+        if (c < ASCII) {
+            return asciiSymbols[c];
+        }
+        Integer symbol = otherSymbols.get(c);
+        return symbol != null ? symbol : 0;
+    }
+    
+    /** @return the best intent for the message, or null if none scored enough */
+    public synchronized Match match(String message) {
+        String text = message.toLowerCase(Locale.ROOT);
+        if (++stamp == 0) {
+            // Wrapped around; old stamps could collide with new ones
+            Arrays.fill(phraseStamp, 0);
+            Arrays.fill(intentStamp, 0);
+            stamp = 1;
+        }
+        
+        int touchedCount = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * alphabetSize + symbolOf(text.charAt(i))];
+            for (int o = outputStart[state]; o < outputStart[state + 1]; o++) {
+                int phrase = outputs[o];
+                if (phraseStamp[phrase] == stamp
+                        || isWordChar(text, i + 1) || isWordChar(text, i - phraseLength[phrase])) {
+                    continue;
+                }
+                phraseStamp[phrase] = stamp;
+                int intent = phraseIntent[phrase];
+                if (intentStamp[intent] != stamp) {
+                    intentStamp[intent] = stamp;
+                    intentScore[intent] = 0;
+                    touched[touchedCount++] = intent;
+                }
+                intentScore[intent] += phraseWeight[phrase];
+            }
+        }
+        
+        int best = -1;
+        for (int t = 0; t < touchedCount; t++) {
+            int intent = touched[t];
+            if (intentScore[intent] < minScores[intent]) {
+                continue;
+            }
+            if (best < 0 || intentScore[intent] > intentScore[best]
+                    || (intentScore[intent] == intentScore[best] && intent < best)) {
+                best = intent;
+            }
+        }
+        return best < 0 ? null : new Match(intentIds[best], templates[best], intentScore[best]);
+    }
+    
+    /**
+     * Answers a message with the winning intent's template filled in from
+     * {@code customer} and this month's {@code month} summary, or returns
+     * null when no intent matched.
+     */
+    public String respond(String message, Customer customer, ActivitySummary month) {
+        Match match = match(message);
+        return match != null ? fillTemplate(match.getResponse(), customer, month) : null;
+    }
+    
+    /**
+     * Replaces {name}, {mobile}, {email}, {account}, {unique10} and
+     * {balance}, and from the month summary {month_sent}, {month_received}
+     * and {month_count}, the number of transfers either way. Placeholders
+     * are left as they are when there is no customer, the summary has not
+     * loaded yet or the name is unknown.
+     */
+    static String fillTemplate(String template, Customer customer, ActivitySummary month) {
+        if (customer == null || template.indexOf('{') < 0) {
+            return template;
+        }
+        StringBuilder out = new StringBuilder(template.length() + 32);
+        int i = 0;
+        while (i < template.length()) {
+            int open = template.indexOf('{', i);
+            int close = open < 0 ? -1 : template.indexOf('}', open);
+            if (close < 0) {
+                out.append(template, i, template.length());
+                break;
+            }
+            out.append(template, i, open);
+            String value = placeholder(template.substring(open + 1, close), customer, month);
+            out.append(value != null ? value : template.substring(open, close + 1));
+            i = close + 1;
+        }
+        return out.toString();
+    }
+    
+    private static String placeholder(String name, Customer customer, ActivitySummary month) {
+        if (name.startsWith("month_")) {
+            return month != null ? monthPlaceholder(name, month) : null;
+        }
+        switch (name) {
+            case "name": return customer.getName();
+            case "mobile": return customer.getMobile();
+            case "email": return customer.getEmailId();
+            case "account": return customer.getAccountNumber();
+            case "unique10": return customer.getUnique10Digit();
+            case "balance": return String.format(Locale.US, "%.2f", customer.getBalance());
+            default: return null;
+        }
+    }
+    
+    private static String monthPlaceholder(String name, ActivitySummary month) {
+        switch (name) {
+            case "month_sent": return String.format(Locale.US, "%.2f", month.getSentTotal());
+            case "month_received": return String.format(Locale.US, "%.2f", month.getReceivedTotal());
+            case "month_count": return String.valueOf(month.getSentCount() + month.getReceivedCount());
+            default: return null;
+        }
+    }
+    
+    /**
+     * Collects intents in priority order. {@link #phrase} applies to the
+     * intent added last.
+     */
+    public static class Builder {
+        private final List<String> intentIds = new ArrayList<>();
+        private final List<String> templates = new ArrayList<>();
+        private final List<Double> minScores = new ArrayList<>();
+        private final List<String> phrases = new ArrayList<>();
+        private final List<Integer> phraseIntents = new ArrayList<>();
+        private final List<Double> phraseWeights = new ArrayList<>();
+        
+        public Builder intent(String id, String responseTemplate) {
+            return intent(id, responseTemplate, 1.0);
+        }
+        
+        /** @param minScore total phrase weight the intent needs before it can win */
+        public Builder intent(String id, String responseTemplate, double minScore) {
+            intentIds.add(id);
+            templates.add(responseTemplate);
+            minScores.add(minScore);
+            return this;
+        }
+        
+        /** Matched as whole words anywhere in the lower-cased message. */
+        public Builder phrase(String phrase, double weight) {
+            if (intentIds.isEmpty()) {
+                throw new IllegalStateException("Add an intent before its phrases");
+            }
+            if (phrase.isEmpty()) {
+                throw new IllegalArgumentException("Empty phrase");
+            }
+            phrases.add(phrase.toLowerCase(Locale.ROOT));
+            phraseIntents.add(intentIds.size() - 1);
+            phraseWeights.add(weight);
+            return this;
+        }
+        
+        public IntentEngine build() {
+            return new IntentEngine(this);
+        }
+    }
+}
+
+// ChatbotIntents.java
+package com.OnePay.paymentapp;
+
+/**
+ * The assistant's topics as data: phrases with weights and a response
+ * template each. Add a topic by adding an entry here. Listed in priority
+ * order, which breaks ties between equal scores.
+ */
+public final class ChatbotIntents {
+    private static IntentEngine engine;
+    
+    private ChatbotIntents() {}
+    
+    /** Compiles the intents on first use and shares the engine afterwards. */
+    public static synchronized IntentEngine getEngine() {
+        if (engine == null) {
+            engine = build();
+        }
+        return engine;
+    }
+    
+    private static IntentEngine build() {
+        return new IntentEngine.Builder()
+                .intent("send_money", "To send money:\n" +
+                        "1. Click on 'Send Money' button\n" +
+                        "2. Enter recipient's mobile number or email ID (example@OnePay.com)\n" +
+                        "3. Enter amount\n" +
+                        "4. Click 'Send Money'\n\n" +
+                        "You can send money using:\n" +
+                        "- Mobile number (10 digits)\n" +
+                        "- Email ID (7-digit key@OnePay.com)")
+                    .phrase("send money", 3)
+                    .phrase("transfer", 2)
+                    .phrase("send", 1)
+                    .phrase("pay someone", 2)
+                .intent("receive_money", "To receive money:\n" +
+                        "1. Share your mobile number or email ID\n" +
+                        "2. Or generate and share your QR code\n" +
+                        "3. Money will be credited to your account instantly\n\n" +
+                        "Your details:\n" +
+                        "- Mobile: {mobile}\n" +
+                        "- Email ID: {email}")
+                    .phrase("receive money", 3)
+                    .phrase("receive", 2)
+                    .phrase("get paid", 2)
+                    .phrase("my details", 1)
+                .intent("qr_payment", "QR code payments:\n" +
+                        "1. Click on 'Generate QR Code' to show your code\n" +
+                        "2. The payer scans it with 'Scan to Pay'\n" +
+                        "3. Your details are filled in for them automatically\n\n" +
+                        "Your QR code carries your mobile, account number {account} and ID {unique10}.")
+                    .phrase("qr", 3)
+                    .phrase("scan", 2)
+                    .phrase("code", 1)
+                .intent("transaction_history", "To see your transactions:\n" +
+                        "1. Click on 'Transaction History'\n" +
+                        "2. Your latest transfers are shown first\n" +
+                        "3. Scroll down to load older ones\n\n" +
+                        "Transfers this month: {month_count}")
+                    .phrase("transaction history", 3)
+                    .phrase("history", 2)
+                    .phrase("transactions", 2)
+                    .phrase("statement", 2)
+                .intent("account_balance", "Hi {name}, your balance is ${balance}.\n" +
+                        "This month you sent ${month_sent} and received ${month_received}.\n" +
+                        "It is also shown on the home screen.")
+                    .phrase("account balance", 3)
+                    .phrase("balance", 2)
+                    .phrase("how much money", 2)
+                .intent("greeting", "Hello {name}! Ask me about sending or receiving money, " +
+                        "QR code payments, your transaction history or your balance.")
+                    .phrase("hello", 1)
+                    .phrase("hi", 1)
+                    .phrase("help", 1)
+                .build();
+    }
+}
+
+// ChatEntry.java
+package com.OnePay.paymentapp;
+
+/** One stored chat message. seq orders it within its conversation. */
+public class ChatEntry {
+    private final long seq;
+    private final String message;
+    private final boolean fromUser;
+    
+    public ChatEntry(long seq, String message, boolean fromUser) {
+        this.seq = seq;
+        this.message = message;
+        this.fromUser = fromUser;
+    }
+    
+    public long getSeq() { return seq; }
+    public String getMessage() { return message; }
+    public boolean isFromUser() { return fromUser; }
+}
+
+// ChatTranscriptAdapter.java
+package com.OnePay.paymentapp;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+import java.util.List;
+
+/**
+ * Chat rows for ChatbotActivity. Ids are message seqs, so when the window
+ * gains or drops messages the ListView keeps its rows and only binds the
+ * visible ones that changed position.
+ */
+public class ChatTranscriptAdapter extends BaseAdapter {
+    private static final int TYPE_USER = 0;
+    private static final int TYPE_BOT = 1;
+    
+    private Context context;
+    private List<ChatEntry> messages;
+    
+    public ChatTranscriptAdapter(Context context, List<ChatEntry> messages) {
+        this.context = context;
+        this.messages = messages;
+    }
+    
+    @Override
+    public int getCount() {
+        return messages.size();
+    }
+    
+    @Override
+    public Object getItem(int position) {
+        return messages.get(position);
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return messages.get(position).getSeq();
+    }
+    
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+    
+    @Override
+    public int getViewTypeCount() {
+        return 2;
+    }
+    
+    @Override
+    public int getItemViewType(int position) {
+        return messages.get(position).isFromUser() ? TYPE_USER : TYPE_BOT;
+    }
+    
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        ChatEntry entry = messages.get(position);
+        if (convertView == null) {
+            int layout = entry.isFromUser() ? R.layout.chat_user_message : R.layout.chat_bot_message;
+            convertView = LayoutInflater.from(context).inflate(layout, parent, false);
+        }
+        
+        TextView messageTextView = convertView.findViewById(R.id.messageTextView);
+        messageTextView.setText(entry.getMessage());
+        
+        return convertView;
+    }
+}
+
 // ChatbotActivity.java
 package com.OnePay.paymentapp;
 
 import android.os.Bundle;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import java.util.ArrayList;
 import java.util.List;
 
 public class ChatbotActivity extends AppCompatActivity {
+    private static final int PAGE_SIZE = 30;
+    // Messages kept in memory at once; the rest stay in the database
+    private static final int MAX_LOADED_MESSAGES = PAGE_SIZE * 5;
+    private static final int PREFETCH_DISTANCE = 5;
+    // Transcript owner when nobody is signed in
+    private static final String GUEST = "";
+    private static final long FIRST_RELOAD_DELAY_MS = 2_000;
+    private static final long MAX_RELOAD_DELAY_MS = 60_000;
+    private static final String DEFAULT_REPLY = "Sorry, I didn't understand that. You can ask me about " +
+            "sending or receiving money, QR code payments, your transaction history or your balance.";
+    
     private ListView chatListView;
     private EditText messageEditText;
     private Button sendButton;
-    private List<ChatMessage> chatMessages;
-    private ChatAdapter chatAdapter;
+    private final List<ChatEntry> chatMessages = new ArrayList<>();
+    private ChatTranscriptAdapter chatAdapter;
+    private PaymentRepository repository;
+    private IntentEngine intentEngine;
+    private Customer currentUser;
+    // This calendar month's totals for the answers; null until loaded
+    private ActivitySummary currentMonth;
+    private String transcriptOwner;
+    // Seq for the next message; unknown until the latest page has loaded
+    private long nextSeq = -1;
+    private boolean hasOlder = false;
+    private boolean hasNewer = false;
+    private boolean loading = false;
+    // Doubles after each failed load of the latest page; 0 while loads succeed
+    private long reloadDelayMs = 0;
+    // Sent while older messages were shown; added once the latest page is back
+    private final List<ChatEntry> pendingTail = new ArrayList<>();
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -700,25 +6682,196 @@ public class ChatbotActivity extends AppCompatActivity {
         messageEditText = findViewById(R.id.messageEditText);
         sendButton = findViewById(R.id.sendButton);
         
-        chatMessages = new ArrayList<>();
-        chatAdapter = new ChatAdapter(this, chatMessages);
+        chatAdapter = new ChatTranscriptAdapter(this, chatMessages);
         chatListView.setAdapter(chatAdapter);
         
-        // Welcome message
-        addBotMessage("Hi! I'm your XYZ Bank assistant. I can help you with:\n" +
-                "1. How to send money\n" +
-                "2. How to receive money\n" +
-                "3. QR code payments\n" +
-                "4. Transaction history\n" +
-                "5. Account balance\n\n" +
-                "What would you like to know?");
+        repository = PaymentRepository.getInstance(this);
+        intentEngine = ChatbotIntents.getEngine();
+        currentUser = SessionManager.getCurrentUser();
+        transcriptOwner = currentUser != null ? currentUser.getMobile() : GUEST;
+        if (currentUser != null) {
+            // The session copy's balance may be out of date; answer with the stored one
+            repository.getCustomerByMobile(currentUser.getMobile(), 
+                    (customer, error) -> {
+                        if (customer != null) {
+                            currentUser = customer;
+                        }
+                    });
+            repository.getCurrentMonthSummary(currentUser.getMobile(), 
+                    (summary, error) -> {
+                        if (summary != null) {
+                            currentMonth = summary;
+                        }
+                    });
+        }
         
+        // Enabled once the transcript is loaded and the next seq is known
+        sendButton.setEnabled(false);
         sendButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 sendMessage();
             }
         });
+        
+        chatListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {}
+            
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, 
+                                 int visibleItemCount, int totalItemCount) {
+                if (hasOlder && firstVisibleItem <= PREFETCH_DISTANCE) {
+                    loadOlderPage();
+                } else if (hasNewer && firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_DISTANCE) {
+                    loadNewerPage();
+                }
+            }
+        });
+        
+        loadLatestPage();
+    }
+    
+    private void loadLatestPage() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        repository.getChatMessages(transcriptOwner, Long.MAX_VALUE, false, PAGE_SIZE, (page, error) -> {
+            loading = false;
+            if (isDestroyed()) {
+                return;
+            }
+            if (error != null) {
+                onLatestPageFailed();
+                return;
+            }
+            reloadDelayMs = 0;
+            onLatestPageLoaded(page);
+        });
+    }
+    
+    /**
+     * Keeps Send disabled and tries again later. Until the latest page is
+     * in, the next seq is unknown, and a guess would collide with stored
+     * messages and lose every later save.
+     */
+    private void onLatestPageFailed() {
+        if (reloadDelayMs == 0) {
+            Toast.makeText(this, "Could not load messages, retrying", Toast.LENGTH_SHORT).show();
+            reloadDelayMs = FIRST_RELOAD_DELAY_MS;
+        } else {
+            reloadDelayMs = Math.min(MAX_RELOAD_DELAY_MS, reloadDelayMs * 2);
+        }
+        chatListView.postDelayed(() -> {
+            if (!isDestroyed()) {
+                loadLatestPage();
+            }
+        }, reloadDelayMs);
+    }
+    
+    private void onLatestPageLoaded(List<ChatEntry> page) {
+        long lastLoadedSeq = page.isEmpty() ? 0 : page.get(page.size() - 1).getSeq();
+        chatMessages.clear();
+        chatMessages.addAll(page);
+        for (ChatEntry entry : pendingTail) {
+            if (entry.getSeq() > lastLoadedSeq) {
+                chatMessages.add(entry);
+            }
+        }
+        pendingTail.clear();
+        hasOlder = page.size() == PAGE_SIZE;
+        hasNewer = false;
+        chatAdapter.notifyDataSetChanged();
+        
+        if (nextSeq < 0) {
+            nextSeq = lastLoadedSeq + 1;
+            sendButton.setEnabled(true);
+            if (page.isEmpty()) {
+                // Welcome message, once per conversation
+                addBotMessage("Hi! I'm your XYZ Bank assistant. I can help you with:\n" +
+                        "1. How to send money\n" +
+                        "2. How to receive money\n" +
+                        "3. QR code payments\n" +
+                        "4. Transaction history\n" +
+                        "5. Account balance\n\n" +
+                        "What would you like to know?");
+            }
+        }
+        if (!chatMessages.isEmpty()) {
+            chatListView.setSelection(chatMessages.size() - 1);
+        }
+    }
+    
+    private void loadOlderPage() {
+        if (loading || chatMessages.isEmpty()) {
+            return;
+        }
+        loading = true;
+        repository.getChatMessages(transcriptOwner, chatMessages.get(0).getSeq(), false, PAGE_SIZE, 
+                (page, error) -> {
+                    loading = false;
+                    if (isDestroyed() || error != null) {
+                        return;
+                    }
+                    onOlderPageLoaded(page);
+                });
+    }
+    
+    private void onOlderPageLoaded(List<ChatEntry> page) {
+        hasOlder = page.size() == PAGE_SIZE;
+        if (!page.isEmpty()) {
+            // Keep the same row under the user's finger while rows go in above it
+            int firstVisible = chatListView.getFirstVisiblePosition();
+            View firstRow = chatListView.getChildAt(0);
+            int offset = firstRow != null ? firstRow.getTop() : 0;
+            chatMessages.addAll(0, page);
+            int overflow = chatMessages.size() - MAX_LOADED_MESSAGES;
+            if (overflow > 0) {
+                chatMessages.subList(chatMessages.size() - overflow, chatMessages.size()).clear();
+                hasNewer = true;
+            }
+            chatAdapter.notifyDataSetChanged();
+            chatListView.setSelectionFromTop(firstVisible + page.size(), offset);
+        }
+        if (!pendingTail.isEmpty()) {
+            loadLatestPage();
+        }
+    }
+    
+    private void loadNewerPage() {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        long lastSeq = chatMessages.get(chatMessages.size() - 1).getSeq();
+        repository.getChatMessages(transcriptOwner, lastSeq, true, PAGE_SIZE, (page, error) -> {
+            loading = false;
+            if (isDestroyed() || error != null) {
+                return;
+            }
+            onNewerPageLoaded(page);
+        });
+    }
+    
+    private void onNewerPageLoaded(List<ChatEntry> page) {
+        hasNewer = page.size() == PAGE_SIZE;
+        if (!page.isEmpty()) {
+            int firstVisible = chatListView.getFirstVisiblePosition();
+            View firstRow = chatListView.getChildAt(0);
+            int offset = firstRow != null ? firstRow.getTop() : 0;
+            chatMessages.addAll(page);
+            int overflow = chatMessages.size() - MAX_LOADED_MESSAGES;
+            if (overflow > 0) {
+                chatMessages.subList(0, overflow).clear();
+                hasOlder = true;
+            }
+            chatAdapter.notifyDataSetChanged();
+            chatListView.setSelectionFromTop(Math.max(0, firstVisible - Math.max(0, overflow)), offset);
+        }
+        if (!pendingTail.isEmpty()) {
+            loadLatestPage();
+        }
     }
     
     private void sendMessage() {
@@ -731,34 +6884,39 @@ public class ChatbotActivity extends AppCompatActivity {
     }
     
     private void addUserMessage(String message) {
-        chatMessages.add(new ChatMessage(message, true));
-        chatAdapter.notifyDataSetChanged();
-        chatListView.smoothScrollToPosition(chatMessages.size() - 1);
+        addMessage(message, true);
     }
     
     private void addBotMessage(String message) {
-        chatMessages.add(new ChatMessage(message, false));
+        addMessage(message, false);
+    }
+    
+    private void addMessage(String message, boolean fromUser) {
+        ChatEntry entry = new ChatEntry(nextSeq++, message, fromUser);
+        repository.saveChatMessage(transcriptOwner, entry, (result, error) -> {
+            if (error != null && !isDestroyed()) {
+                Toast.makeText(this, "Message could not be saved", Toast.LENGTH_SHORT).show();
+            }
+        });
+        if (hasNewer) {
+            // Older messages are on screen; jump back to the end of the conversation
+            pendingTail.add(entry);
+            loadLatestPage();
+            return;
+        }
+        
+        chatMessages.add(entry);
+        int overflow = chatMessages.size() - MAX_LOADED_MESSAGES;
+        if (overflow > 0) {
+            chatMessages.subList(0, overflow).clear();
+            hasOlder = true;
+        }
         chatAdapter.notifyDataSetChanged();
-        chatListView.smoothScrollToPosition(chatMessages.size() - 1);
+        chatListView.setSelection(chatMessages.size() - 1);
     }
     
     private void processBotResponse(String userMessage) {
-        String response = "";
-        String lowerMessage = userMessage.toLowerCase();
-        
-        if (lowerMessage.contains("send money") || lowerMessage.contains("transfer")) {
-            response = "To send money:\n" +
-                    "1. Click on 'Send Money' button\n" +
-                    "2. Enter recipient's mobile number or email ID (example@OnePay.com)\n" +
-                    "3. Enter amount\n" +
-                    "4. Click 'Send Money'\n\n" +
-                    "You can send money using:\n" +
-                    "- Mobile number (10 digits)\n" +
-                    "- Email ID (7-digit key@OnePay.com)";
-        } else if (lowerMessage.contains("receive money") || lowerMessage.contains("receive")) {
-            response = "To receive money:\n" +
-                    "1. Share your mobile number or email ID\n" +
-                    "2. Or generate and share your QR code\n" +
-                    "3. Money will be credited to your account instantly\n\n" +
-                    "Your details:\n" +
-                    "- Mobile:
\ No newline at end of file
+        String response = intentEngine.respond(userMessage, currentUser, currentMonth);
+        addBotMessage(response != null ? response : DEFAULT_REPLY);
+    }
+}
@@ -0,0 +1,188 @@
+// MainThreadDiskAccessTest.java
+package com.OnePay.paymentapp;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.os.strictmode.Violation;
+import android.util.Log;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Opens each data-backed screen under a StrictMode policy that records disk
+ * reads and writes on the main thread, and fails if there are any. On a
+ * fresh install (or with the orchestrator clearing package data) the first
+ * database open and the sample data load are covered too. StrictMode's
+ * violation listener needs API 28.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainThreadDiskAccessTest {
+    // Long enough for background loads to post their results back
+    private static final long SETTLE_MS = 1500;
+    
+    private final List<Violation> violations = new CopyOnWriteArrayList<>();
+    private StrictMode.ThreadPolicy previousPolicy;
+    
+    @Before
+    public void setUp() {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        // A session copy like the one login leaves behind, built without touching the database
+        Customer user = new Customer();
+        user.setName("John Doe");
+        user.setMobile("1234567890");
+        user.setBalance(1000.0);
+        SessionManager.setCurrentUser(user);
+        
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            previousPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyListener(Runnable::run, violations::add)
+                    .build());
+        });
+    }
+    
+    @After
+    public void tearDown() {
+        if (previousPolicy != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(
+                    () -> StrictMode.setThreadPolicy(previousPolicy));
+        }
+    }
+    
+    @Test
+    public void mainScreen() {
+        open(MainActivity.class);
+    }
+    
+    @Test
+    public void sendMoneyScreen() {
+        open(SendMoneyActivity.class);
+    }
+    
+    @Test
+    public void transactionHistoryScreen() {
+        open(TransactionHistoryActivity.class);
+    }
+    
+    @Test
+    public void chatbotScreen() {
+        open(ChatbotActivity.class);
+    }
+    
+    private void open(Class<? extends Activity> screen) {
+        try (ActivityScenario<? extends Activity> scenario = ActivityScenario.launch(screen)) {
+            SystemClock.sleep(SETTLE_MS);
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+        if (!violations.isEmpty()) {
+            StringBuilder message = new StringBuilder(screen.getSimpleName())
+                    .append(" touched the disk on the main thread ")
+                    .append(violations.size()).append(" time(s):\n");
+            for (Violation violation : violations) {
+                message.append(Log.getStackTraceString(violation)).append('\n');
+            }
+            fail(message.toString());
+        }
+    }
+}
+
+// StartupTimeTest.java
+package com.OnePay.paymentapp;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Time from launching MainActivity to its reportFullyDrawn(), which it
+ * calls once the live balance is on screen. The cold case needs package
+ * data cleared, as the orchestrator does with clearPackageData, so it
+ * covers installing the prebuilt database and opening it for the first
+ * time; otherwise it is skipped. The warm case launches the screen again
+ * in a process whose database is already open. Times are logged and sent
+ * as instrumentation status ("cold_ms", "warm_ms"). Process start itself
+ * is not included; "am start -W" gives that.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupTimeTest {
+    private static final String TAG = "StartupTimeTest";
+    private static final long TIMEOUT_MS = 10_000;
+    private static final int WARM_LAUNCHES = 5;
+    
+    @Before
+    public void setUp() {
+        Customer user = new Customer();
+        user.setName("John Doe");
+        user.setMobile("1234567890");
+        user.setBalance(1000.0);
+        SessionManager.setCurrentUser(user);
+    }
+    
+    @Test
+    public void coldStart() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        assumeFalse("Package data was not cleared", 
+                context.getDatabasePath(DatabaseHelper.DATABASE_NAME).exists());
+        report("cold_ms", timeToFullyDrawn());
+    }
+    
+    @Test
+    public void warmStart() {
+        // Opens the database and loads the screen's classes
+        timeToFullyDrawn();
+        long[] times = new long[WARM_LAUNCHES];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = timeToFullyDrawn();
+        }
+        Log.i(TAG, "warm launches (ms): " + Arrays.toString(times));
+        Arrays.sort(times);
+        report("warm_ms", times[times.length / 2]);
+    }
+    
+    private long timeToFullyDrawn() {
+        long launched = SystemClock.uptimeMillis();
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            long[] drawnAt = new long[1];
+            while (drawnAt[0] == 0) {
+                if (SystemClock.uptimeMillis() - launched > TIMEOUT_MS) {
+                    fail("MainActivity did not report fully drawn within " + TIMEOUT_MS + " ms");
+                }
+                SystemClock.sleep(5);
+                scenario.onActivity(activity -> drawnAt[0] = activity.getFullyDrawnAt());
+            }
+            return drawnAt[0] - launched;
+        }
+    }
+    
+    private static void report(String key, long millis) {
+        Log.i(TAG, key + "=" + millis);
+        Bundle results = new Bundle();
+        results.putLong(key, millis);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+}